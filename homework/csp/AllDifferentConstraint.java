@@ -0,0 +1,241 @@
+package csp;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * AllDifferentConstraints keep a group of meetings on pairwise different
+ * dates, such as: all-different [0, 1, 2, 3]. Where the pairwise != constraints
+ * only prune once a meeting is assigned, this constraint prunes every date
+ * that belongs to no complete assignment of the group (Regin's algorithm):
+ * meetings and dates form a bipartite graph, a maximum matching of which
+ * covers every meeting if the group can be satisfied at all, and a date can be
+ * used by a meeting exactly when their edge lies in the matching, on an
+ * alternating cycle, or on an alternating path from a date no meeting has in
+ * the matching.
+ */
+public class AllDifferentConstraint extends CustomConstraint {
+
+    /**
+     * Constructs a new AllDifferentConstraint.
+     *
+     * @param meetings Indexes of the meetings that must all differ, at least two
+     */
+    AllDifferentConstraint(int... meetings) {
+        super(meetings);
+        if (meetings.length < 2) {
+            throw new IllegalArgumentException("Invalid variable index");
+        }
+    }
+
+    @Override
+    boolean check(int[] days, LocalDate rangeStart) {
+        Set<Integer> seen = new HashSet<>();
+        for (int day : days) {
+            if (day != UNASSIGNED && !seen.add(day)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    boolean propagate(Domain[] domains, LocalDate rangeStart, Domain.Trail trail) {
+        int n = domains.length, first = Integer.MAX_VALUE, last = -1;
+        for (Domain domain : domains) {
+            if (domain.isEmpty()) {
+                return false;
+            }
+            first = Math.min(first, domain.min());
+            last = Math.max(last, domain.max());
+        }
+        if (last - first + 1 < n) {
+            return false;
+        }
+        // Dates are numbered from the earliest in any domain
+        int[][] dates = new int[n][];
+        for (int i = 0; i < n; i++) {
+            dates[i] = domains[i].toArray();
+            for (int j = 0; j < dates[i].length; j++) {
+                dates[i][j] -= first;
+            }
+        }
+        Matching matching = new Matching(dates, last - first + 1);
+        if (!matching.coversMeetings()) {
+            return false;
+        }
+        matching.markUsable();
+        for (int i = 0; i < n; i++) {
+            for (int date : dates[i]) {
+                if (!matching.usable(i, date)) {
+                    domains[i].remove(date + first, trail);
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    AllDifferentConstraint renumber(int[] scope) {
+        return new AllDifferentConstraint(scope);
+    }
+
+    @Override
+    public String toString() {
+        return "all-different " + Arrays.toString(scope());
+    }
+
+    /**
+     * A maximum matching of meetings to dates, and the residual graph in which
+     * matched edges run from meeting to date and the others from date to
+     * meeting, so that directed paths alternate between the two. Meetings are
+     * numbered 0 to n-1 as nodes and date d is node n+d.
+     */
+    private static class Matching {
+        private final int[][] dates, holders;
+        private final int[] dateOf, meetingOf;
+        private final int n;
+        // Dates reachable from an unmatched date, and each node's strongly
+        // connected component, found by Tarjan's algorithm
+        private boolean[] reached;
+        private int[] component, index, low, stack;
+        private boolean[] onStack;
+        private int counter, components, top;
+
+        Matching(int[][] dates, int span) {
+            this.dates = dates;
+            this.n = dates.length;
+            this.dateOf = new int[n];
+            this.meetingOf = new int[span];
+            Arrays.fill(dateOf, -1);
+            Arrays.fill(meetingOf, -1);
+            int[] count = new int[span];
+            for (int[] options : dates) {
+                for (int date : options) {
+                    count[date]++;
+                }
+            }
+            this.holders = new int[span][];
+            for (int d = 0; d < span; d++) {
+                holders[d] = new int[count[d]];
+                count[d] = 0;
+            }
+            for (int i = 0; i < n; i++) {
+                for (int date : dates[i]) {
+                    holders[date][count[date]++] = i;
+                }
+            }
+            // Greedy matching first, then augmenting paths for the rest
+            for (int i = 0; i < n; i++) {
+                for (int date : dates[i]) {
+                    if (meetingOf[date] < 0) {
+                        dateOf[i] = date;
+                        meetingOf[date] = i;
+                        break;
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (dateOf[i] < 0 && !augment(i, new boolean[span])) {
+                    return;
+                }
+            }
+        }
+
+        boolean coversMeetings() {
+            for (int date : dateOf) {
+                if (date < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean usable(int meeting, int date) {
+            return dateOf[meeting] == date || reached[date] || component[meeting] == component[n + date];
+        }
+
+        void markUsable() {
+            int span = meetingOf.length;
+            reached = new boolean[span];
+            int[] queue = new int[span];
+            int head = 0, tail = 0;
+            for (int d = 0; d < span; d++) {
+                if (meetingOf[d] < 0 && holders[d].length > 0) {
+                    reached[d] = true;
+                    queue[tail++] = d;
+                }
+            }
+            while (head < tail) {
+                for (int meeting : holders[queue[head++]]) {
+                    int next = dateOf[meeting];
+                    if (!reached[next]) {
+                        reached[next] = true;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            component = new int[n + span];
+            index = new int[n + span];
+            low = new int[n + span];
+            stack = new int[n + span];
+            onStack = new boolean[n + span];
+            Arrays.fill(index, -1);
+            for (int node = 0; node < n + span; node++) {
+                if (index[node] < 0) {
+                    connect(node);
+                }
+            }
+        }
+
+        private boolean augment(int meeting, boolean[] visited) {
+            for (int date : dates[meeting]) {
+                if (!visited[date]) {
+                    visited[date] = true;
+                    if (meetingOf[date] < 0 || augment(meetingOf[date], visited)) {
+                        dateOf[meeting] = date;
+                        meetingOf[date] = meeting;
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void connect(int node) {
+            index[node] = low[node] = counter++;
+            stack[top++] = node;
+            onStack[node] = true;
+            if (node < n) {
+                visit(node, n + dateOf[node]);
+            } else {
+                for (int meeting : holders[node - n]) {
+                    if (dateOf[meeting] != node - n) {
+                        visit(node, meeting);
+                    }
+                }
+            }
+            if (low[node] == index[node]) {
+                int member;
+                do {
+                    member = stack[--top];
+                    onStack[member] = false;
+                    component[member] = components;
+                } while (member != node);
+                components++;
+            }
+        }
+
+        private void visit(int node, int next) {
+            if (index[next] < 0) {
+                connect(next);
+                low[node] = Math.min(low[node], low[next]);
+            } else if (onStack[next]) {
+                low[node] = Math.min(low[node], index[next]);
+            }
+        }
+    }
+
+}
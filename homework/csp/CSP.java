@@ -1,9 +1,36 @@
 package csp;
 
+import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * CSP: Calendar Satisfaction Problem Solver Provides a solution for scheduling
@@ -12,11 +39,148 @@ import java.util.Set;
  */
 public class CSP {
 
+    /** Order in which backtracking picks the next meeting to assign */
+    public enum VariableOrder {
+        /** Lowest-indexed unassigned meeting first */
+        INDEX,
+        /**
+         * Minimum remaining values: the meeting with the fewest dates left in its
+         * domain, breaking ties by the most constraints on unassigned meetings
+         */
+        MRV
+    }
+
+    /** Order in which backtracking tries the dates of the chosen meeting */
+    public enum ValueOrder {
+        /** Earliest date first */
+        CALENDAR,
+        /**
+         * Least constraining value: the date that rules out the fewest dates of
+         * the unassigned neighboring meetings first
+         */
+        LCV
+    }
+
+    /** Inference run after each tentative assignment during backtracking */
+    public enum Inference {
+        /** Only check the assignment against the meetings already assigned */
+        NONE,
+        /**
+         * Forward checking: remove the dates of unassigned neighboring meetings
+         * that conflict with the assignment
+         */
+        FORWARD_CHECKING,
+        /**
+         * Maintaining arc consistency: re-run AC-3 outward from the assigned
+         * meeting, so pruning spreads beyond its direct neighbors
+         */
+        MAC
+    }
+
+    /** How the search is spread over threads */
+    public enum Parallelism {
+        /** One depth-first search on the calling thread */
+        SEQUENTIAL,
+        /**
+         * Split the top levels of the search tree into subtrees, searched by a
+         * fork/join pool whose idle threads steal the subtrees still waiting
+         */
+        WORK_STEALING,
+        /**
+         * Race differently configured searches against each other, including
+         * randomized ones that restart with growing node limits, and keep the
+         * first answer
+         */
+        PORTFOLIO
+    }
+
+    /** Receives each better schedule found while minimizing an objective */
+    public interface Incumbent {
+        /**
+         * @param solution The schedule, indexed by meeting
+         * @param cost     Its cost, lower than any schedule reported before it
+         */
+        void improved(List<LocalDate> solution, long cost);
+    }
+
+    /**
+     * Hears each assignment the search tries and undoes, for tracing or
+     * profiling a search. Days are offsets from the start of the range, so that
+     * no date is built per node. A connected component searched on its own
+     * reports its own depths, and a parallel search calls the listener from
+     * every thread it searches on.
+     */
+    public interface SearchListener {
+        /**
+         * @param meeting The meeting assigned
+         * @param day     The day it was assigned
+         * @param depth   The number of meetings assigned before it
+         */
+        default void assigned(int meeting, int day, int depth) {
+        }
+
+        /**
+         * @param meeting The meeting whose assignment was undone
+         * @param day     The day it had been assigned
+         * @param depth   The number of meetings assigned before it
+         */
+        default void backtracked(int meeting, int day, int depth) {
+        }
+    }
+
+    private static final int CHECK_INTERVAL = 1 << 8, SUBTREES_PER_THREAD = 16, RESTART_NODES = 1 << 10,
+            MAX_NOGOOD_LENGTH = 8;
+
+    private final LocalDate rangeStart;
+    private final List<MeetingVariable> variables;
+    private final Set<DateConstraint> constraints;
+    private final List<List<BinaryDateConstraint>> constraintsOn;
+    // Every custom constraint, and those with more than one meeting listed
+    // under each meeting they constrain
+    private final List<CustomConstraint> customs;
+    private final List<List<CustomConstraint>> customsOn;
+    private final List<List<Arc>> arcsInto;
+    private final boolean[] arcQueued;
+    private final Domain.Trail trail;
+    // For conflict-directed backjumping: the meeting assigned at each depth of
+    // the search, each meeting's depth, the earlier depths the meeting at each
+    // depth has conflicted with, and the depths whose forward checks pruned
+    // each meeting's domain
+    private final int[] order, depthOf;
+    private final BitSet[] conflicts, prunedBy;
+    private NogoodStore nogoods;
+    private boolean backjumping;
+    private int nogoodCapacity, jumpTo;
+    private VariableOrder variableOrder;
+    private ValueOrder valueOrder;
+    private Inference inference;
+    private Parallelism parallelism;
+    private int threads, assigned;
+    // Raised to stop every search sharing it, once one of them has an answer;
+    // each solve and minimize starts with a new one. Cancelled is raised only
+    // by whoever started the solve, such as the CSP a component was split from
+    private AtomicBoolean stop, cancelled;
+    private Random random;
+    private long nodes, nodeLimit, restartNodes;
+    private boolean aborted, orderingOnly;
+    // For branch and bound: the objective, each meeting's day as the
+    // objective sees it, every meeting's domain, and the best schedule found,
+    // which is also where a portfolio entrant leaves its answer
+    private Objective objective;
+    private Incumbent incumbent;
+    private int[] days;
+    private Domain[] domains;
+    private List<LocalDate> best;
+    private long bestCost, deadline;
+    // Null unless the search is being counted or traced
+    private SolverStats stats;
+    private SearchListener listener;
+
     /**
      * Public interface for the CSP solver in which the number of meetings, range of
      * allowable dates for each meeting, and constraints on meeting times are
      * specified.
-     * 
+     *
      * @param nMeetings   The number of meetings that must be scheduled, indexed
      *                    from 0 to n-1
      * @param rangeStart  The start date (inclusive) of the domains of each of the n
@@ -31,179 +195,1726 @@ public class CSP {
      */
     public static List<LocalDate> solve(int nMeetings, LocalDate rangeStart, LocalDate rangeEnd,
             Set<DateConstraint> constraints) {
-        List<MeetingVariable> variables = populateVariables(new ArrayList<MeetingVariable>(), nMeetings, rangeStart,
-                rangeEnd);
-        handlePreprocessing(variables, constraints);
-        return handleAssignments(variables, constraints);
+        return new CSP(nMeetings, rangeStart, rangeEnd, constraints).solve();
+    }
+
+    /**
+     * Solves the given meetings under comparison and custom constraints
+     * together.
+     *
+     * @see #solve(int, LocalDate, LocalDate, Set)
+     */
+    public static List<LocalDate> solve(int nMeetings, LocalDate rangeStart, LocalDate rangeEnd,
+            Set<DateConstraint> constraints, Collection<CustomConstraint> customs) {
+        return new CSP(nMeetings, rangeStart, rangeEnd, constraints, customs).solve();
+    }
+
+    /**
+     * Constructs a new CSP over the given meetings, indexing every binary
+     * constraint under both of the meetings it mentions. Search defaults to MRV
+     * variable ordering, calendar value ordering and forward checking.
+     *
+     * @param nMeetings   The number of meetings that must be scheduled
+     * @param rangeStart  The start date (inclusive) of every meeting's domain
+     * @param rangeEnd    The end date (inclusive) of every meeting's domain
+     * @param constraints Date constraints on the meeting times
+     */
+    public CSP(int nMeetings, LocalDate rangeStart, LocalDate rangeEnd, Set<DateConstraint> constraints) {
+        this(nMeetings, rangeStart, rangeEnd, constraints, Collections.<CustomConstraint>emptyList());
+    }
+
+    /**
+     * Constructs a new CSP whose meetings are also held to custom constraints,
+     * indexing each under every meeting in its scope.
+     *
+     * @param nMeetings   The number of meetings that must be scheduled
+     * @param rangeStart  The start date (inclusive) of every meeting's domain
+     * @param rangeEnd    The end date (inclusive) of every meeting's domain
+     * @param constraints Date constraints on the meeting times
+     * @param customs     Custom constraints on the meeting times
+     */
+    public CSP(int nMeetings, LocalDate rangeStart, LocalDate rangeEnd, Set<DateConstraint> constraints,
+            Collection<CustomConstraint> customs) {
+        this.rangeStart = rangeStart;
+        this.variables = populateVariables(new ArrayList<MeetingVariable>(), nMeetings,
+                (int) Math.max(0, ChronoUnit.DAYS.between(rangeStart, rangeEnd) + 1));
+        this.constraints = constraints;
+        this.constraintsOn = indexConstraints(nMeetings, constraints);
+        this.customs = new ArrayList<>(customs);
+        this.customsOn = indexCustoms(nMeetings, this.customs);
+        this.arcsInto = indexArcs(nMeetings, constraints);
+        this.arcQueued = new boolean[arcsInto.stream().mapToInt(List::size).sum()];
+        this.trail = new Domain.Trail();
+        this.order = new int[nMeetings];
+        this.depthOf = new int[nMeetings];
+        Arrays.fill(depthOf, -1);
+        this.conflicts = new BitSet[nMeetings];
+        this.prunedBy = new BitSet[nMeetings];
+        for (int i = 0; i < nMeetings; i++) {
+            conflicts[i] = new BitSet();
+            prunedBy[i] = new BitSet();
+        }
+        this.backjumping = true;
+        this.variableOrder = VariableOrder.MRV;
+        this.valueOrder = ValueOrder.CALENDAR;
+        this.inference = Inference.FORWARD_CHECKING;
+        this.parallelism = Parallelism.SEQUENTIAL;
+        this.threads = 1;
+        this.stop = new AtomicBoolean();
+        this.cancelled = new AtomicBoolean();
+        this.nodeLimit = Long.MAX_VALUE;
+    }
+
+    // A copy of the other CSP's domains and assignments, sharing its indexes
+    // and stop flags, for another thread to search from
+    private CSP(CSP other) {
+        this.rangeStart = other.rangeStart;
+        this.variables = new ArrayList<>();
+        for (MeetingVariable meeting : other.variables) {
+            variables.add(new MeetingVariable(meeting));
+        }
+        this.constraints = other.constraints;
+        this.constraintsOn = other.constraintsOn;
+        this.customs = other.customs;
+        this.customsOn = other.customsOn;
+        this.arcsInto = other.arcsInto;
+        this.arcQueued = new boolean[other.arcQueued.length];
+        this.trail = new Domain.Trail();
+        this.order = other.order.clone();
+        this.depthOf = other.depthOf.clone();
+        this.conflicts = new BitSet[order.length];
+        this.prunedBy = new BitSet[order.length];
+        for (int i = 0; i < order.length; i++) {
+            conflicts[i] = (BitSet) other.conflicts[i].clone();
+            prunedBy[i] = (BitSet) other.prunedBy[i].clone();
+        }
+        this.backjumping = other.backjumping;
+        this.nogoodCapacity = other.nogoodCapacity;
+        this.nogoods = nogoodCapacity > 0 ? new NogoodStore(nogoodCapacity, MAX_NOGOOD_LENGTH) : null;
+        this.variableOrder = other.variableOrder;
+        this.valueOrder = other.valueOrder;
+        this.inference = other.inference;
+        this.parallelism = Parallelism.SEQUENTIAL;
+        this.threads = 1;
+        this.assigned = other.assigned;
+        this.stop = other.stop;
+        this.cancelled = other.cancelled;
+        this.nodeLimit = Long.MAX_VALUE;
+        this.stats = other.stats == null ? null : new SolverStats();
+        this.listener = other.listener;
+    }
+
+    /**
+     * @param order How backtracking chooses the next meeting to assign
+     */
+    public void variableOrder(VariableOrder order) {
+        this.variableOrder = order;
+    }
+
+    /**
+     * @param order How backtracking orders the dates it tries for a meeting
+     */
+    public void valueOrder(ValueOrder order) {
+        this.valueOrder = order;
+    }
+
+    /**
+     * @param inference How backtracking prunes domains after each assignment
+     */
+    public void inference(Inference inference) {
+        this.inference = inference;
+    }
+
+    /**
+     * @param enabled Whether a dead end jumps straight back to the deepest
+     *                meeting in its conflict set, skipping the meetings in
+     *                between that played no part in it, rather than to the
+     *                meeting assigned just before it; MAC always steps back one
+     *                meeting at a time
+     */
+    public void backjumping(boolean enabled) {
+        this.backjumping = enabled;
+    }
+
+    /**
+     * @param capacity Most nogoods, partial assignments proven to lead nowhere,
+     *                 to remember during search; 0 remembers none
+     */
+    public void nogoods(int capacity) {
+        this.nogoodCapacity = capacity;
+        this.nogoods = capacity > 0 ? new NogoodStore(capacity, MAX_NOGOOD_LENGTH) : null;
+    }
+
+    /**
+     * @param parallelism How to spread the search over threads
+     * @param threads     Number of threads to search on, unless SEQUENTIAL
+     */
+    public void parallelism(Parallelism parallelism, int threads) {
+        this.parallelism = parallelism;
+        this.threads = threads;
+    }
+
+    /**
+     * @param enabled Whether later solves should count the work they do
+     */
+    public void collectStats(boolean enabled) {
+        this.stats = enabled ? new SolverStats() : null;
+    }
+
+    /**
+     * @return The work done by the last solve, minimize, count or enumeration,
+     *         or null if stats are off
+     */
+    public SolverStats stats() {
+        return stats;
+    }
+
+    /**
+     * @param listener Hears each assignment later searches try and undo, or
+     *                 null for none
+     */
+    public void listener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Solves the CSP by node and arc consistency followed by backtracking over
+     * each connected component of the constraint graph on its own; components
+     * whose constraints form a tree need no backtracking at all.
+     *
+     * @return A list of dates that satisfies each of the constraints, indexed by
+     *         meeting, or null if no solution exists.
+     */
+    public List<LocalDate> solve() {
+        return solve(new AtomicBoolean());
+    }
+
+    /**
+     * Solves the CSP, giving up once the given flag is raised. The search
+     * raises only a stop flag of its own, since a parallel search raises it
+     * once it has an answer, which must not cut short the next component.
+     *
+     * @param cancelled Flag raised to abandon this search
+     */
+    private List<LocalDate> solve(AtomicBoolean cancelled) {
+        this.stop = new AtomicBoolean();
+        this.cancelled = cancelled;
+        try {
+            if (!propagate()) {
+                return null;
+            }
+            if (orderingOnly) {
+                return gatherEarliestAssignment(new ArrayList<LocalDate>());
+            }
+            return solveByComponents();
+        } finally {
+            // A solution returns with its assignments and their pruning still
+            // in place, which later searches must not start from
+            resetSearch();
+        }
+    }
+
+    /**
+     * Finds the schedule that minimizes the given objective, within a time
+     * budget.
+     *
+     * @see #minimize(Objective, long, Incumbent)
+     */
+    public List<LocalDate> minimize(Objective objective, long budgetMillis) {
+        return minimize(objective, budgetMillis, null);
+    }
+
+    /**
+     * Finds the schedule that minimizes the given objective by branch and
+     * bound: a depth-first search that, once it has found a schedule, only
+     * looks for cheaper ones. A subtree is pruned as soon as the objective's
+     * lower bound over the current domains reaches the best cost, and after
+     * each assignment the objective narrows the domains to the days that could
+     * still beat it. The search backtracks one meeting at a time, since the
+     * bound rather than a conflict may be what closed a subtree, and searches
+     * every meeting together, since the objective couples them.
+     *
+     * @param objective    The cost to minimize
+     * @param budgetMillis Milliseconds the search may take before it returns the
+     *                     best schedule found so far, or 0 for no limit
+     * @param incumbent    Receives each better schedule as it is found, or
+     *                     null
+     * @return The cheapest schedule found, indexed by meeting, or null if none
+     *         was found, whether because none exists or because the budget ran
+     *         out first; it is optimal unless the budget ran out
+     */
+    public List<LocalDate> minimize(Objective objective, long budgetMillis, Incumbent incumbent) {
+        this.objective = objective;
+        this.incumbent = incumbent;
+        this.deadline = budgetMillis > 0 ? System.nanoTime() + budgetMillis * 1_000_000L : Long.MAX_VALUE;
+        this.best = null;
+        this.bestCost = Long.MAX_VALUE;
+        this.stop = new AtomicBoolean();
+        this.cancelled = new AtomicBoolean();
+        if (!propagate()) {
+            return null;
+        }
+        this.days = new int[variables.size()];
+        Arrays.fill(days, Objective.UNASSIGNED);
+        this.domains = new Domain[variables.size()];
+        for (MeetingVariable meeting : variables) {
+            domains[meeting.index] = meeting.domain;
+        }
+        branchAndBound();
+        return best;
+    }
+
+    /**
+     * @return The cost of the schedule the last minimize returned, or
+     *         Long.MAX_VALUE if it found none
+     */
+    public long bestCost() {
+        return bestCost;
+    }
+
+    /**
+     * @return Whether the last minimize searched to the end, so that its
+     *         schedule is optimal or no schedule exists
+     */
+    public boolean provedOptimal() {
+        return objective != null && !aborted;
+    }
+
+    /**
+     * Enumerates every solution lazily: each call to next resumes the
+     * backtracking search where the last solution left it, so solutions are
+     * never held in memory beyond the one returned. Search backtracks one
+     * meeting at a time, since a conflict set says nothing about the solutions
+     * below the meetings a backjump would skip, and does not run in parallel.
+     *
+     * @return An iterator over the solutions, each a list of dates indexed by
+     *         meeting
+     */
+    public Iterator<List<LocalDate>> solutions() {
+        return new SolutionIterator();
+    }
+
+    /**
+     * @return A sequential stream over the solutions, searched lazily as it is
+     *         consumed
+     * @see #solutions()
+     */
+    public Stream<List<LocalDate>> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(solutions(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Counts the solutions without listing them. After propagation, meetings
+     * are split into the connected components of the constraint graph, whose
+     * solutions combine freely, so the count is the product of the components'
+     * counts: a meeting with no binary constraints counts its domain, and a
+     * larger component is counted by backtracking over its meetings alone.
+     * Once inference has pruned the last meeting of a component against all the
+     * others, each date left in its domain is one solution.
+     *
+     * @return The number of solutions
+     */
+    public BigInteger count() {
+        if (!propagate()) {
+            return BigInteger.ZERO;
+        }
+        BigInteger count = BigInteger.ONE;
+        for (List<Integer> component : components()) {
+            count = count.multiply(countAssignments(component, 0));
+            if (count.signum() == 0) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Prunes every domain by node consistency, bounds propagation and, unless
+     * the constraints are orderings alone, arc consistency, without searching.
+     * Custom constraints propagate before bounds and again after arc
+     * consistency. Whatever an earlier search left behind is undone first.
+     *
+     * @return false if some meeting's domain was emptied, meaning no solution
+     *         exists
+     */
+    boolean propagate() {
+        resetSearch();
+        if (stats != null) {
+            stats.reset();
+        }
+        handlePreprocessing();
+        if (!propagateCustoms(customs, null, -1)) {
+            return false;
+        }
+        orderingOnly = isOrderingOnly();
+        return handleBoundsPropagation() && (orderingOnly || handleArcConsistency())
+                && propagateCustoms(customs, null, -1);
+    }
+
+    /**
+     * Narrows a meeting's domain, before solving, to the given days, e.g. the
+     * ones an earlier propagation over fewer constraints left it.
+     */
+    void seed(int meeting, Domain domain) {
+        variables.get(meeting).domain.retainAll(domain, null);
+    }
+
+    /**
+     * @return The days left in the given meeting's domain
+     */
+    Domain domain(int meeting) {
+        return variables.get(meeting).domain;
     }
 
     /** Helper Methods */
 
+    /**
+     * Undoes an earlier search: its assignments, the pruning it recorded on
+     * the trail, the depths and conflict sets of its meetings and the nogoods
+     * it learned, so that the next search starts from the domains propagation
+     * left.
+     */
+    private void resetSearch() {
+        trail.undo(0);
+        for (MeetingVariable meeting : variables) {
+            meeting.removeAssignment();
+        }
+        assigned = 0;
+        Arrays.fill(depthOf, -1);
+        for (int i = 0; i < conflicts.length; i++) {
+            conflicts[i].clear();
+            prunedBy[i].clear();
+        }
+        nogoods(nogoodCapacity);
+        aborted = false;
+        nodes = 0;
+    }
+
     private static List<MeetingVariable> populateVariables(ArrayList<MeetingVariable> variables, int totalMeetings,
-            LocalDate startDate, LocalDate endDate) {
+            int days) {
         for (int i = 0; i < totalMeetings; i++) {
-            variables.add(new MeetingVariable(startDate, endDate));
+            variables.add(new MeetingVariable(i, days));
         }
         return variables;
     }
 
-    private static List<MeetingVariable> handlePreprocessing(List<MeetingVariable> variables,
-            Set<DateConstraint> constraints) {
-        for (MeetingVariable meeting : variables) {
-            List<LocalDate> meetingDomain = meeting.domain;
-            for (int i = 0; i < meetingDomain.size(); i++) {
-                LocalDate date = meetingDomain.get(i);
-                for (DateConstraint constraint : constraints) {
-                    if (constraint.arity() == 1) {
-                        LocalDate rightDate = ((UnaryDateConstraint) constraint).R_VAL;
-                        if (!isValidConstraint(date, constraint, rightDate)) {
-                            meetingDomain.remove(date);
-                            i--;
-                            break;
+    /**
+     * @return The connected components of the binary constraint graph, each
+     *         listed in breadth-first order, so that every meeting after the
+     *         first is constrained by one listed before it
+     */
+    private List<List<Integer>> components() {
+        List<List<Integer>> components = new ArrayList<>();
+        boolean[] seen = new boolean[variables.size()];
+        for (int start = 0; start < seen.length; start++) {
+            if (seen[start]) {
+                continue;
+            }
+            List<Integer> component = new ArrayList<>();
+            seen[start] = true;
+            component.add(start);
+            for (int i = 0; i < component.size(); i++) {
+                int meeting = component.get(i);
+                for (BinaryDateConstraint constraint : constraintsOn.get(meeting)) {
+                    int other = constraint.L_VAL == meeting ? constraint.R_VAL : constraint.L_VAL;
+                    if (!seen[other]) {
+                        seen[other] = true;
+                        component.add(other);
+                    }
+                }
+                for (CustomConstraint custom : customsOn.get(meeting)) {
+                    for (int other : custom.scope()) {
+                        if (!seen[other]) {
+                            seen[other] = true;
+                            component.add(other);
                         }
                     }
                 }
             }
+            components.add(component);
         }
-        return variables;
+        return components;
     }
 
-    private static boolean isValidConstraint(LocalDate leftDate, DateConstraint constraint, LocalDate rightDate) {
-        boolean isValid = false;
-        switch (constraint.OP) {
-        case "==":
-            if (leftDate.isEqual(rightDate))
-                isValid = true;
-            break;
-        case "!=":
-            if (!leftDate.isEqual(rightDate))
-                isValid = true;
-            break;
-        case ">":
-            if (leftDate.isAfter(rightDate))
-                isValid = true;
-            break;
-        case "<":
-            if (leftDate.isBefore(rightDate))
-                isValid = true;
-            break;
-        case ">=":
-            if (leftDate.isAfter(rightDate) || leftDate.isEqual(rightDate))
-                isValid = true;
-            break;
-        case "<=":
-            if (leftDate.isBefore(rightDate) || leftDate.isEqual(rightDate))
-                isValid = true;
-            break;
+    // Unary constraints are settled once and for all by node consistency, so
+    // only the binary constraints need to be found again during search
+    private static List<List<BinaryDateConstraint>> indexConstraints(int totalMeetings,
+            Set<DateConstraint> constraints) {
+        List<List<BinaryDateConstraint>> index = new ArrayList<>();
+        for (int i = 0; i < totalMeetings; i++) {
+            index.add(new ArrayList<BinaryDateConstraint>());
+        }
+        for (DateConstraint constraint : constraints) {
+            if (constraint.arity() == 2) {
+                BinaryDateConstraint binary = (BinaryDateConstraint) constraint;
+                index.get(binary.L_VAL).add(binary);
+                index.get(binary.R_VAL).add(binary);
+            }
         }
-        return isValid;
+        return index;
     }
 
-    private static List<LocalDate> gatherCompleteAssignment(List<LocalDate> completeAssignment,
-            List<MeetingVariable> variables) {
-        for (MeetingVariable meeting : variables) {
-            completeAssignment.add(meeting.getAssignment());
+    // Both directions of every binary constraint, listed under their head and
+    // numbered consecutively
+    private static List<List<Arc>> indexArcs(int totalMeetings, Set<DateConstraint> constraints) {
+        List<List<Arc>> index = new ArrayList<>();
+        for (int i = 0; i < totalMeetings; i++) {
+            index.add(new ArrayList<Arc>());
         }
-        return completeAssignment;
+        int id = 0;
+        for (DateConstraint constraint : constraints) {
+            if (constraint.arity() == 2) {
+                BinaryDateConstraint binary = (BinaryDateConstraint) constraint;
+                index.get(binary.R_VAL).add(new Arc(id++, binary.L_VAL, binary.R_VAL, binary));
+                index.get(binary.L_VAL).add(new Arc(id++, binary.R_VAL, binary.L_VAL, binary));
+            }
+        }
+        return index;
     }
 
-    private static List<LocalDate> handleAssignments(List<MeetingVariable> variables, Set<DateConstraint> constraints) {
-        if (variables.get(variables.size() - 1).getAssignment() != null) {
-            return gatherCompleteAssignment(new ArrayList<LocalDate>(), variables);
+    // Unary custom constraints, like unary comparisons, are settled before
+    // search, so only the others are indexed
+    private static List<List<CustomConstraint>> indexCustoms(int totalMeetings, List<CustomConstraint> customs) {
+        List<List<CustomConstraint>> index = new ArrayList<>();
+        for (int i = 0; i < totalMeetings; i++) {
+            index.add(new ArrayList<CustomConstraint>());
         }
-        MeetingVariable current = getCurrentMeeting(variables);
-        for (LocalDate date : current.domain) {
-            current.setAssignment(date);
-            if (checkConsistency(variables, constraints)) {
-                List<LocalDate> completeAssignment = handleAssignments(variables, constraints);
-                if (completeAssignment != null) {
-                    return completeAssignment;
+        for (CustomConstraint custom : customs) {
+            if (custom.arity() > 1) {
+                for (int meeting : custom.scope()) {
+                    index.get(meeting).add(custom);
+                }
+            }
+        }
+        return index;
+    }
+
+    // Each unary constraint is a single bulk restriction of its meeting's
+    // bitset; pruning before search is never undone, so it is not trailed
+    private void handlePreprocessing() {
+        for (DateConstraint constraint : constraints) {
+            if (constraint.arity() == 1) {
+                long day = ChronoUnit.DAYS.between(rangeStart, ((UnaryDateConstraint) constraint).R_VAL);
+                Domain domain = variables.get(constraint.L_VAL).domain;
+                int size = domain.size();
+                domain.restrict(constraint.OPERATOR, day, null);
+                if (stats != null) {
+                    stats.checks++;
+                    stats.prune(SolverStats.Propagator.NODE_CONSISTENCY, size - domain.size());
                 }
             }
-            current.removeAssignment();
         }
-        return null;
     }
 
-    private static MeetingVariable getCurrentMeeting(List<MeetingVariable> variables) {
+    /**
+     * Propagates the earliest and latest dates of every meeting across the
+     * ordering constraints (<, <=, >, >= and == between meetings) to a fixpoint,
+     * then cuts each domain down to its bounds. Each such constraint reads as a
+     * difference constraint "a + gap <= b", so the earliest dates are longest
+     * paths in the constraint graph, found by queue-based Bellman-Ford, and the
+     * latest dates are the same on the reversed graph. A bound tightened along
+     * a path of n constraints lies on a cycle that can never be satisfied, so
+     * infeasible orderings are caught in polynomial time, however long the
+     * scheduling range.
+     *
+     * @return false if some meeting's bounds crossed, meaning no solution
+     *         exists
+     */
+    private boolean handleBoundsPropagation() {
+        int n = variables.size();
+        long[] earliest = new long[n], latest = new long[n];
         for (MeetingVariable meeting : variables) {
-            if (meeting.getAssignment() == null) {
-                return meeting;
+            if (meeting.domain.isEmpty()) {
+                return false;
             }
+            earliest[meeting.index] = meeting.domain.min();
+            latest[meeting.index] = meeting.domain.max();
         }
-        return null;
+        if (!relaxBounds(earliest, latest, true) || !relaxBounds(earliest, latest, false)) {
+            return false;
+        }
+        for (MeetingVariable meeting : variables) {
+            int size = meeting.domain.size();
+            meeting.domain.keepBetween(earliest[meeting.index], latest[meeting.index], null);
+            if (stats != null) {
+                stats.prune(SolverStats.Propagator.BOUNDS, size - meeting.domain.size());
+            }
+            if (meeting.domain.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    public static boolean checkConsistency(List<MeetingVariable> variables, Set<DateConstraint> constraints) {
-        boolean isValid = false;
-        for (DateConstraint constraint : constraints) {
-            LocalDate leftDate = variables.get(constraint.L_VAL).getAssignment();
-            LocalDate rightDate = (constraint.arity() == 1) ? ((UnaryDateConstraint) constraint).R_VAL
-                    : variables.get(((BinaryDateConstraint) constraint).R_VAL).getAssignment();
-            isValid = false;
-            if (leftDate == null || rightDate == null) {
-                isValid = true;
-                continue;
+    /**
+     * Queue-based Bellman-Ford over the ordering constraints, raising earliest
+     * dates along each "a + gap <= b" or lowering latest dates against it.
+     *
+     * @param earliest Each meeting's earliest date, raised in place if forward
+     * @param latest   Each meeting's latest date, lowered in place otherwise
+     * @param forward  Whether to propagate earliest dates from a to b, or latest
+     *                 dates from b back to a
+     * @return false if some meeting's bounds crossed or it lies on an
+     *         unsatisfiable cycle
+     */
+    private boolean relaxBounds(long[] earliest, long[] latest, boolean forward) {
+        int n = variables.size();
+        // Edges on the path that last tightened each bound; a path of n edges
+        // must go round a cycle that tightens it forever
+        int[] pathEdges = new int[n];
+        boolean[] queued = new boolean[n];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            queued[i] = true;
+            queue.add(i);
+        }
+        while (!queue.isEmpty()) {
+            int from = queue.poll();
+            queued[from] = false;
+            for (BinaryDateConstraint constraint : constraintsOn.get(from)) {
+                if (constraint.OPERATOR == Operator.NE) {
+                    continue;
+                }
+                if (stats != null) {
+                    stats.checks++;
+                }
+                // Read the constraint as "a + gap <= b" with from on the side
+                // whose bound pushes on the other; == pushes both ways
+                boolean fromIsLeft = constraint.L_VAL == from;
+                Operator operator = fromIsLeft ? constraint.OPERATOR : constraint.OPERATOR.converse();
+                int to = fromIsLeft ? constraint.R_VAL : constraint.L_VAL;
+                boolean fromIsA = operator == Operator.LT || operator == Operator.LE;
+                if (operator != Operator.EQ && fromIsA != forward) {
+                    continue;
+                }
+                int gap = operator == Operator.LT || operator == Operator.GT ? 1 : 0;
+                boolean tightened;
+                if (forward) {
+                    tightened = earliest[from] + gap > earliest[to];
+                    earliest[to] = Math.max(earliest[to], earliest[from] + gap);
+                } else {
+                    tightened = latest[from] - gap < latest[to];
+                    latest[to] = Math.min(latest[to], latest[from] - gap);
+                }
+                if (!tightened) {
+                    continue;
+                }
+                pathEdges[to] = pathEdges[from] + 1;
+                if (earliest[to] > latest[to] || pathEdges[to] >= n) {
+                    return false;
+                }
+                if (!queued[to]) {
+                    queued[to] = true;
+                    queue.add(to);
+                }
             }
-            switch (constraint.OP) {
-            case "==":
-                if (leftDate.isEqual(rightDate))
-                    isValid = true;
-                break;
-            case "!=":
-                if (!leftDate.isEqual(rightDate))
-                    isValid = true;
-                break;
-            case ">":
-                if (leftDate.isAfter(rightDate))
-                    isValid = true;
-                break;
-            case "<":
-                if (leftDate.isBefore(rightDate))
-                    isValid = true;
-                break;
-            case ">=":
-                if (leftDate.isAfter(rightDate) || leftDate.isEqual(rightDate))
-                    isValid = true;
-                break;
-            case "<=":
-                if (leftDate.isBefore(rightDate) || leftDate.isEqual(rightDate))
-                    isValid = true;
-                break;
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether the constraints are only orderings between meetings whose
+     *         domains are unbroken ranges of days, in which case scheduling every
+     *         meeting on its earliest date, once bounds are propagated, satisfies
+     *         them all without search; a domain with holes could leave the
+     *         propagated bound itself on a missing day
+     */
+    private boolean isOrderingOnly() {
+        if (!customs.isEmpty()) {
+            return false;
+        }
+        for (MeetingVariable meeting : variables) {
+            if (meeting.domain.size() != meeting.domain.max() - meeting.domain.min() + 1) {
+                return false;
+            }
+            for (BinaryDateConstraint constraint : constraintsOn.get(meeting.index)) {
+                if (constraint.OPERATOR == Operator.NE) {
+                    return false;
+                }
             }
-            if (!isValid) {
+        }
+        return true;
+    }
+
+    /**
+     * Enforces arc consistency (AC-3) over the binary constraints: every date
+     * left in a meeting's domain has, for each constraint on that meeting, some
+     * date in the other meeting's domain that satisfies it. Whenever a domain
+     * shrinks, the arcs pointing into that meeting are revisited.
+     *
+     * @return false if some meeting's domain was emptied, meaning no solution
+     *         exists
+     */
+    private boolean handleArcConsistency() {
+        for (MeetingVariable meeting : variables) {
+            if (meeting.domain.isEmpty()) {
                 return false;
             }
         }
-        return isValid;
+        Queue<Arc> queue = new ArrayDeque<>();
+        for (List<Arc> arcs : arcsInto) {
+            for (Arc arc : arcs) {
+                arcQueued[arc.id] = true;
+                queue.add(arc);
+            }
+        }
+        return propagate(queue, null);
     }
 
-    /** Private Classes */
-    private static class MeetingVariable {
-        List<LocalDate> domain;
-        LocalDate assignment;
+    /**
+     * Revises the queued arcs, and the arcs into any domain they shrink, until
+     * none are left or a domain is emptied.
+     *
+     * @param queue Arcs to revise, each already marked as queued
+     * @param trail Trail to record pruned words on, or null if the pruning is
+     *              permanent
+     * @return false if some meeting's domain was emptied
+     */
+    private boolean propagate(Queue<Arc> queue, Domain.Trail trail) {
+        while (!queue.isEmpty()) {
+            Arc arc = queue.poll();
+            arcQueued[arc.id] = false;
+            MeetingVariable tail = variables.get(arc.tail);
+            int size = tail.domain.size();
+            if (stats != null) {
+                stats.checks++;
+            }
+            if (revise(tail, variables.get(arc.head), arc, trail)) {
+                if (stats != null) {
+                    stats.prune(SolverStats.Propagator.ARC_CONSISTENCY, size - tail.domain.size());
+                }
+                if (tail.domain.isEmpty()) {
+                    for (Arc left : queue) {
+                        arcQueued[left.id] = false;
+                    }
+                    return false;
+                }
+                for (Arc into : arcsInto.get(arc.tail)) {
+                    if (into.tail != arc.head && !arcQueued[into.id]) {
+                        arcQueued[into.id] = true;
+                        queue.add(into);
+                    }
+                }
+            }
+        }
+        return true;
+    }
 
-        MeetingVariable(LocalDate startDate, LocalDate endDate) {
-            this.domain = populateDomain(new ArrayList<LocalDate>(), startDate, endDate);
+    /**
+     * Removes every date from the tail's domain that has no support in the
+     * head's domain. Support for the ordering operators depends only on the
+     * head's earliest and latest dates, so they cut the tail's bitset at a
+     * single day; == intersects the two bitsets.
+     *
+     * @return true if the tail's domain shrank
+     */
+    private static boolean revise(MeetingVariable tail, MeetingVariable head, Arc arc, Domain.Trail trail) {
+        Operator operator = arc.operator();
+        switch (operator) {
+        case EQ:
+            return tail.domain.retainAll(head.domain, trail);
+        case NE:
+            return head.domain.size() == 1 && tail.domain.restrict(operator, head.domain.min(), trail);
+        case GT:
+        case GE:
+            return tail.domain.restrict(operator, head.domain.min(), trail);
+        default:
+            return tail.domain.restrict(operator, head.domain.max(), trail);
         }
+    }
 
-        private List<LocalDate> populateDomain(List<LocalDate> domain, LocalDate startDate, LocalDate endDate) {
-            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-                domain.add(date);
+    /**
+     * Prunes the dates of the meeting's unassigned neighbors that conflict with
+     * its assignment. When a neighbor's domain is emptied, every depth that
+     * pruned it shares the blame.
+     *
+     * @param depth The depth the meeting was assigned at
+     * @return false if some neighbor's domain was emptied
+     */
+    private boolean forwardCheck(MeetingVariable meeting, int depth) {
+        for (BinaryDateConstraint constraint : constraintsOn.get(meeting.index)) {
+            boolean isLeft = constraint.L_VAL == meeting.index;
+            MeetingVariable other = variables.get(isLeft ? constraint.R_VAL : constraint.L_VAL);
+            if (other.isAssigned()) {
+                continue;
+            }
+            // Read the constraint with the neighbor on the left
+            Operator operator = isLeft ? constraint.OPERATOR.converse() : constraint.OPERATOR;
+            int size = other.domain.size();
+            if (other.domain.restrict(operator, meeting.assignment, trail)) {
+                prunedBy[other.index].set(depth);
+            }
+            if (stats != null) {
+                stats.checks++;
+                stats.prune(SolverStats.Propagator.FORWARD_CHECKING, size - other.domain.size());
             }
-            return domain;
+            if (other.domain.isEmpty()) {
+                conflicts[depth].or(prunedBy[other.index]);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Narrows the assigned meeting's domain to its assignment and restores arc
+     * consistency outward from it. Revising the arcs from already assigned
+     * neighbors doubles as the consistency check against them.
+     *
+     * @return false if some meeting's domain was emptied
+     */
+    private boolean maintainArcConsistency(MeetingVariable meeting) {
+        meeting.domain.restrict(Operator.EQ, meeting.assignment, trail);
+        Queue<Arc> queue = new ArrayDeque<>();
+        for (Arc arc : arcsInto.get(meeting.index)) {
+            arcQueued[arc.id] = true;
+            queue.add(arc);
+        }
+        return propagate(queue, trail);
+    }
+
+    /**
+     * Checks and propagates the assignment just made at the given depth. On
+     * failure, the earlier depths to blame are added to the depth's conflict
+     * set.
+     *
+     * @return false if the assignment was shown to lead nowhere
+     */
+    private boolean infer(MeetingVariable meeting, int depth) {
+        if (stats != null) {
+            stats.nodes++;
+            stats.maxDepth = Math.max(stats.maxDepth, depth + 1);
+        }
+        if (listener != null) {
+            listener.assigned(meeting.index, meeting.assignment, depth);
+        }
+        int[] nogood = nogoods == null ? null
+                : nogoods.violated(meeting.index, meeting.assignment, i -> variables.get(i).assignment);
+        if (nogood != null) {
+            for (int i = 0; i < nogood.length; i += 2) {
+                conflicts[depth].set(depthOf[nogood[i]]);
+            }
+            return false;
+        }
+        switch (inference) {
+        case FORWARD_CHECKING:
+            return forwardCheck(meeting, depth) && reviseCustoms(meeting, depth);
+        case MAC:
+            // Pruning may have spread far from the meeting, so blame every
+            // earlier depth
+            if (maintainArcConsistency(meeting) && reviseCustoms(meeting, depth)) {
+                return true;
+            }
+            conflicts[depth].set(0, depth);
+            return false;
+        default:
+            return checkConsistency(meeting, depth);
+        }
+    }
+
+    /**
+     * Narrows the assigned meeting's domain to its date and runs the
+     * propagators of its custom constraints. Which assignments a propagator's
+     * pruning follows from is not known, so a wipeout is blamed on every
+     * earlier depth.
+     *
+     * @return false if some meeting's domain was emptied
+     */
+    private boolean reviseCustoms(MeetingVariable meeting, int depth) {
+        if (customsOn.get(meeting.index).isEmpty()) {
+            return true;
+        }
+        meeting.domain.restrict(Operator.EQ, meeting.assignment, trail);
+        if (propagateCustoms(customsOn.get(meeting.index), trail, depth)) {
+            return true;
+        }
+        conflicts[depth].set(0, depth);
+        return false;
+    }
+
+    /**
+     * Runs the given custom constraints' propagators, and those of the custom
+     * constraints on any meeting they prune, until none prunes further.
+     *
+     * @param start Custom constraints to propagate first
+     * @param trail Trail to record pruned words on, or null if the pruning is
+     *              permanent
+     * @param depth Depth of the assignment being propagated, whose pruning
+     *              every depth up to it shares the blame for, or -1
+     * @return false if some meeting's domain was emptied
+     */
+    private boolean propagateCustoms(List<CustomConstraint> start, Domain.Trail trail, int depth) {
+        Queue<CustomConstraint> queue = new ArrayDeque<>(start);
+        Set<CustomConstraint> queued = new HashSet<>(start);
+        while (!queue.isEmpty()) {
+            CustomConstraint custom = queue.poll();
+            queued.remove(custom);
+            int[] scope = custom.scope();
+            Domain[] domains = new Domain[scope.length];
+            int[] sizes = new int[scope.length];
+            for (int i = 0; i < scope.length; i++) {
+                domains[i] = variables.get(scope[i]).domain;
+                sizes[i] = domains[i].size();
+            }
+            if (stats != null) {
+                stats.checks++;
+            }
+            if (!custom.propagate(domains, rangeStart, trail)) {
+                return false;
+            }
+            for (int i = 0; i < scope.length; i++) {
+                if (domains[i].size() == sizes[i]) {
+                    continue;
+                }
+                if (stats != null) {
+                    stats.prune(SolverStats.Propagator.CUSTOM, sizes[i] - domains[i].size());
+                }
+                if (depth >= 0) {
+                    prunedBy[scope[i]].set(0, depth + 1);
+                }
+                for (CustomConstraint next : customsOn.get(scope[i])) {
+                    if (next != custom && queued.add(next)) {
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // Marks the meeting as assigned at the next depth of the search
+    private int descend(MeetingVariable meeting) {
+        int depth = assigned++;
+        order[depth] = meeting.index;
+        depthOf[meeting.index] = depth;
+        conflicts[depth].clear();
+        return depth;
+    }
+
+    // Undoes the meeting's assignment at the given depth and its pruning
+    private void retract(MeetingVariable meeting, int depth, int mark) {
+        if (stats != null) {
+            stats.backtracks++;
+        }
+        if (listener != null) {
+            listener.backtracked(meeting.index, meeting.assignment, depth);
+        }
+        trail.undo(mark);
+        meeting.removeAssignment();
+        for (BinaryDateConstraint constraint : constraintsOn.get(meeting.index)) {
+            prunedBy[constraint.L_VAL == meeting.index ? constraint.R_VAL : constraint.L_VAL].clear(depth);
+        }
+    }
+
+    private List<LocalDate> gatherCompleteAssignment(List<LocalDate> completeAssignment) {
+        for (MeetingVariable meeting : variables) {
+            completeAssignment.add(rangeStart.plusDays(meeting.assignment));
+        }
+        return completeAssignment;
+    }
+
+    private List<LocalDate> gatherEarliestAssignment(List<LocalDate> completeAssignment) {
+        for (MeetingVariable meeting : variables) {
+            completeAssignment.add(rangeStart.plusDays(meeting.domain.min()));
+        }
+        return completeAssignment;
+    }
+
+    private List<LocalDate> handleAssignments() {
+        if (assigned == variables.size()) {
+            return gatherCompleteAssignment(new ArrayList<LocalDate>());
+        }
+        if (++nodes % CHECK_INTERVAL == 0 && stopped()) {
+            aborted = true;
+        }
+        if (aborted || nodes > nodeLimit) {
+            aborted = true;
+            return null;
+        }
+        MeetingVariable current = getCurrentMeeting();
+        int depth = descend(current);
+        boolean jumping = false;
+        for (int day : orderDates(current)) {
+            int mark = trail.mark();
+            current.assignment = day;
+            if (infer(current, depth)) {
+                List<LocalDate> completeAssignment = handleAssignments();
+                if (completeAssignment != null) {
+                    return completeAssignment;
+                }
+                jumping = aborted || jumpTo < depth;
+            }
+            retract(current, depth, mark);
+            if (jumping) {
+                break;
+            }
+        }
+        assigned--;
+        depthOf[current.index] = -1;
+        if (!jumping) {
+            backjump(current, depth);
+        }
+        return null;
+    }
+
+    /**
+     * Counts the assignments of the component's meetings from the i-th on that
+     * are consistent with those before it.
+     */
+    private BigInteger countAssignments(List<Integer> component, int i) {
+        if (i == component.size()) {
+            return BigInteger.ONE;
+        }
+        MeetingVariable current = variables.get(component.get(i));
+        if (i == component.size() - 1 && inference != Inference.NONE && customsOn.get(current.index).isEmpty()) {
+            return BigInteger.valueOf(current.domain.size());
+        }
+        int depth = descend(current);
+        BigInteger count = BigInteger.ZERO;
+        for (int day : current.domain.toArray()) {
+            int mark = trail.mark();
+            current.assignment = day;
+            if (infer(current, depth)) {
+                count = count.add(countAssignments(component, i + 1));
+            }
+            retract(current, depth, mark);
+        }
+        assigned--;
+        depthOf[current.index] = -1;
+        return count;
+    }
+
+    /**
+     * Searches below the current assignments for schedules cheaper than the
+     * best found, keeping each as the new best.
+     */
+    private void branchAndBound() {
+        if (++nodes % CHECK_INTERVAL == 0
+                && (System.nanoTime() > deadline || stopped())) {
+            aborted = true;
+        }
+        if (aborted || objective.lowerBound(days, domains, rangeStart) >= bestCost) {
+            return;
+        }
+        if (assigned == variables.size()) {
+            best = gatherCompleteAssignment(new ArrayList<LocalDate>());
+            bestCost = objective.lowerBound(days, domains, rangeStart);
+            if (incumbent != null) {
+                incumbent.improved(new ArrayList<>(best), bestCost);
+            }
+            return;
+        }
+        MeetingVariable current = getCurrentMeeting();
+        int depth = descend(current);
+        for (int day : orderDates(current)) {
+            int mark = trail.mark();
+            current.assignment = day;
+            days[current.index] = day;
+            if (infer(current, depth) && (bestCost == Long.MAX_VALUE
+                    || objective.tighten(days, domains, bestCost, rangeStart, trail))) {
+                branchAndBound();
+            }
+            days[current.index] = Objective.UNASSIGNED;
+            retract(current, depth, mark);
+            if (aborted) {
+                break;
+            }
+        }
+        assigned--;
+        depthOf[current.index] = -1;
+    }
+
+    /**
+     * Every date of the meeting at the given depth has failed. Its conflict set,
+     * together with the depths that pruned its domain, holds the only earlier
+     * assignments to blame; jump back to the deepest of them, which inherits
+     * the rest of the set. Those assignments together are a nogood.
+     */
+    private void backjump(MeetingVariable meeting, int depth) {
+        BitSet conflict = conflicts[depth];
+        conflict.or(prunedBy[meeting.index]);
+        // MAC does not record which depths pruned a domain, so a conflict set
+        // built from nogoods alone could leave out the assignment that did
+        if (!backjumping || inference == Inference.MAC) {
+            conflict.set(0, depth);
+        }
+        conflict.clear(depth, Math.max(depth, conflict.length()));
+        jumpTo = conflict.previousSetBit(depth - 1);
+        int length = conflict.cardinality();
+        if (nogoods != null && length <= MAX_NOGOOD_LENGTH) {
+            int[] meetings = new int[length], days = new int[length];
+            for (int d = conflict.nextSetBit(0), i = 0; d >= 0; d = conflict.nextSetBit(d + 1), i++) {
+                meetings[i] = order[d];
+                days[i] = variables.get(order[d]).assignment;
+            }
+            nogoods.record(meetings, days, length);
+        }
+        if (jumpTo >= 0) {
+            conflicts[jumpTo].or(conflict);
+            conflicts[jumpTo].clear(jumpTo);
+        }
+    }
+
+    /**
+     * Solves each connected component of the constraint graph independently,
+     * since no constraint links their assignments: backtracking over them
+     * together would retry one component's dates under every failed
+     * arrangement of another's. A component whose constraints form a tree is
+     * already directionally arc consistent from any root after AC-3, so each
+     * meeting, taken in breadth-first order, has a date consistent with the
+     * one neighbor placed before it and is assigned without backtracking.
+     * The other components are searched as separate CSPs, in parallel if more
+     * than one thread is configured; the first to fail stops the rest.
+     */
+    private List<LocalDate> solveByComponents() {
+        List<List<Integer>> components = components(), searched = new ArrayList<>();
+        for (List<Integer> component : components) {
+            if (!isTree(component) || !assignTree(component)) {
+                searched.add(component);
+            }
+        }
+        if (components.size() == 1 && searched.size() == 1) {
+            return searchAll();
+        }
+        if (searched.size() > 1 && parallelism != Parallelism.SEQUENTIAL && threads > 1) {
+            return searchComponentsInParallel(searched);
+        }
+        for (List<Integer> component : searched) {
+            CSP sub = subproblem(component);
+            List<LocalDate> solution = sub.solve(cancelled);
+            absorbStats(sub);
+            if (!assignComponent(component, solution)) {
+                return null;
+            }
+        }
+        return gatherCompleteAssignment(new ArrayList<LocalDate>());
+    }
+
+    // Searches every meeting at once, spread over threads as configured
+    private List<LocalDate> searchAll() {
+        switch (parallelism) {
+        case WORK_STEALING:
+            return solveByWorkStealing();
+        case PORTFOLIO:
+            return solveByPortfolio();
+        default:
+            return handleAssignments();
+        }
+    }
+
+    private List<LocalDate> searchComponentsInParallel(List<List<Integer>> components) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        AtomicBoolean failed = new AtomicBoolean();
+        try {
+            List<ForkJoinTask<List<LocalDate>>> tasks = new ArrayList<>();
+            List<CSP> subs = new ArrayList<>();
+            for (List<Integer> component : components) {
+                CSP sub = subproblem(component);
+                subs.add(sub);
+                sub.parallelism = Parallelism.SEQUENTIAL;
+                tasks.add(pool.submit(() -> {
+                    List<LocalDate> solution = sub.solve(failed);
+                    if (solution == null) {
+                        failed.set(true);
+                    }
+                    return solution;
+                }));
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                List<LocalDate> solution = tasks.get(i).get();
+                absorbStats(subs.get(i));
+                if (!assignComponent(components.get(i), solution)) {
+                    return null;
+                }
+            }
+            return gatherCompleteAssignment(new ArrayList<LocalDate>());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Solve interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Solve failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Whether the connected component's constraints form a tree, i.e.
+     *         are all binary and number one fewer than its meetings; two
+     *         constraints between the same pair of meetings form a cycle
+     */
+    private boolean isTree(List<Integer> component) {
+        int ends = 0;
+        for (int meeting : component) {
+            if (!customsOn.get(meeting).isEmpty()) {
+                return false;
+            }
+            ends += constraintsOn.get(meeting).size();
+        }
+        return ends / 2 == component.size() - 1;
+    }
+
+    /**
+     * Assigns each meeting of a tree component, in breadth-first order, the
+     * earliest date consistent with its already assigned neighbor.
+     *
+     * @return false, with the component left unassigned, if some meeting had no
+     *         such date, which arc consistency rules out
+     */
+    private boolean assignTree(List<Integer> component) {
+        for (int meeting : component) {
+            MeetingVariable current = variables.get(meeting);
+            Domain options = new Domain(current.domain);
+            for (BinaryDateConstraint constraint : constraintsOn.get(meeting)) {
+                boolean isLeft = constraint.L_VAL == meeting;
+                MeetingVariable other = variables.get(isLeft ? constraint.R_VAL : constraint.L_VAL);
+                if (other.isAssigned()) {
+                    options.restrict(isLeft ? constraint.OPERATOR : constraint.OPERATOR.converse(), other.assignment,
+                            null);
+                }
+            }
+            if (options.isEmpty()) {
+                for (int assigned : component) {
+                    variables.get(assigned).removeAssignment();
+                }
+                return false;
+            }
+            current.assignment = options.min();
+        }
+        return true;
+    }
+
+    /**
+     * Builds a CSP over the component's meetings alone, numbered by their
+     * position in the list, starting from their propagated domains and
+     * searching as this one is configured to.
+     */
+    private CSP subproblem(List<Integer> component) {
+        int[] local = new int[variables.size()];
+        for (int i = 0; i < component.size(); i++) {
+            local[component.get(i)] = i;
+        }
+        Set<DateConstraint> translated = new LinkedHashSet<>();
+        List<CustomConstraint> customs = new ArrayList<>();
+        for (int meeting : component) {
+            for (BinaryDateConstraint constraint : constraintsOn.get(meeting)) {
+                if (constraint.L_VAL == meeting) {
+                    translated.add(new BinaryDateConstraint(local[meeting], constraint.OP, local[constraint.R_VAL]));
+                }
+            }
+            for (CustomConstraint custom : customsOn.get(meeting)) {
+                int[] scope = custom.scope();
+                if (scope[0] == meeting) {
+                    for (int i = 0; i < scope.length; i++) {
+                        scope[i] = local[scope[i]];
+                    }
+                    customs.add(custom.renumber(scope));
+                }
+            }
+        }
+        CSP sub = new CSP(component.size(), rangeStart, rangeStart.plusDays(variables.get(0).domain.days() - 1),
+                translated, customs);
+        for (int i = 0; i < component.size(); i++) {
+            sub.seed(i, variables.get(component.get(i)).domain);
+        }
+        sub.variableOrder = variableOrder;
+        sub.valueOrder = valueOrder;
+        sub.inference = inference;
+        sub.backjumping = backjumping;
+        sub.nogoods(nogoodCapacity);
+        sub.parallelism = parallelism;
+        sub.threads = threads;
+        sub.stats = stats == null ? null : new SolverStats();
+        sub.listener = listener == null ? null : renumbered(listener, component);
+        return sub;
+    }
+
+    // Passes a subproblem's events on under the meetings' numbers in this CSP
+    private static SearchListener renumbered(SearchListener listener, List<Integer> component) {
+        return new SearchListener() {
+            @Override
+            public void assigned(int meeting, int day, int depth) {
+                listener.assigned(component.get(meeting), day, depth);
+            }
+
+            @Override
+            public void backtracked(int meeting, int day, int depth) {
+                listener.backtracked(component.get(meeting), day, depth);
+            }
+        };
+    }
+
+    // Adds the work another thread or subproblem counted to this CSP's stats
+    private void absorbStats(CSP other) {
+        if (stats != null) {
+            stats.merge(other.stats);
+        }
+    }
+
+    // Copies a component's solution, numbered as by subproblem, into the
+    // meetings' assignments
+    private boolean assignComponent(List<Integer> component, List<LocalDate> solution) {
+        if (solution == null) {
+            return false;
+        }
+        for (int i = 0; i < component.size(); i++) {
+            variables.get(component.get(i)).assignment = (int) ChronoUnit.DAYS.between(rangeStart, solution.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Searches the subtrees below the first few assignments on a fork/join
+     * pool. The first solution found stops the others.
+     */
+    private List<LocalDate> solveByWorkStealing() {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Subtree root = new Subtree(new CSP(this), threads * SUBTREES_PER_THREAD);
+            List<LocalDate> solution = pool.invoke(root);
+            absorbStats(root.csp);
+            return solution;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Races one search per thread, each on its own copy of the preprocessed
+     * domains, and returns whichever answers first; a proof that no solution
+     * exists is an answer too.
+     */
+    private List<LocalDate> solveByPortfolio() {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "csp-portfolio");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<CSP>> entrants = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                CSP entrant = new CSP(this);
+                entrant.configureEntrant(i);
+                entrants.add(entrant::runEntrant);
+            }
+            // Only the winner's work is counted; the others are still being
+            // cancelled as it returns
+            CSP winner = pool.invokeAny(entrants);
+            absorbStats(winner);
+            return winner.best;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Solve interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Solve failed", e.getCause());
+        } finally {
+            stop.set(true);
+            pool.shutdownNow();
+        }
+    }
+
+    // Entrant 0 searches as configured and the next three vary its heuristics
+    // and inference; the rest try dates in a random order of their own and
+    // restart with a doubled node limit whenever they reach it
+    private void configureEntrant(int entrant) {
+        switch (entrant) {
+        case 0:
+            break;
+        case 1:
+            variableOrder = VariableOrder.MRV;
+            valueOrder = ValueOrder.LCV;
+            inference = Inference.MAC;
+            break;
+        case 2:
+            variableOrder = VariableOrder.MRV;
+            valueOrder = ValueOrder.CALENDAR;
+            inference = Inference.MAC;
+            break;
+        case 3:
+            variableOrder = VariableOrder.INDEX;
+            valueOrder = ValueOrder.LCV;
+            inference = Inference.FORWARD_CHECKING;
+            break;
+        default:
+            valueOrder = ValueOrder.CALENDAR;
+            random = new Random(entrant);
+            restartNodes = RESTART_NODES;
+            nodeLimit = restartNodes;
+        }
+    }
+
+    // Whether another search has an answer, or this one was cancelled or its
+    // thread interrupted
+    private boolean stopped() {
+        return stop.get() || cancelled.get() || Thread.currentThread().isInterrupted();
+    }
+
+    // Returns the entrant itself, holding its answer as its best schedule
+    private CSP runEntrant() {
+        while (true) {
+            best = handleAssignments();
+            if (!aborted) {
+                stop.set(true);
+                return this;
+            }
+            if (stopped()) {
+                throw new CancellationException();
+            }
+            aborted = false;
+            restartNodes *= 2;
+            nodeLimit = nodes + restartNodes;
+        }
+    }
+
+    private MeetingVariable getCurrentMeeting() {
+        MeetingVariable best = null;
+        int bestDegree = 0;
+        for (MeetingVariable meeting : variables) {
+            if (meeting.isAssigned()) {
+                continue;
+            }
+            if (variableOrder == VariableOrder.INDEX) {
+                return meeting;
+            }
+            if (best == null || meeting.domain.size() < best.domain.size()) {
+                best = meeting;
+                bestDegree = -1;
+            } else if (meeting.domain.size() == best.domain.size()) {
+                if (bestDegree < 0) {
+                    bestDegree = unassignedDegree(best);
+                }
+                int degree = unassignedDegree(meeting);
+                if (degree > bestDegree) {
+                    best = meeting;
+                    bestDegree = degree;
+                }
+            }
+        }
+        return best;
+    }
+
+    // The number of constraints between the given meeting and unassigned ones
+    private int unassignedDegree(MeetingVariable meeting) {
+        int degree = 0;
+        for (BinaryDateConstraint constraint : constraintsOn.get(meeting.index)) {
+            int other = constraint.L_VAL == meeting.index ? constraint.R_VAL : constraint.L_VAL;
+            if (!variables.get(other).isAssigned()) {
+                degree++;
+            }
+        }
+        return degree;
+    }
+
+    /**
+     * @return The meeting's days in the order they should be tried: calendar
+     *         order, or for LCV ascending by the number of dates each rules out
+     *         across the unassigned neighboring meetings (calendar order on ties)
+     */
+    private int[] orderDates(MeetingVariable meeting) {
+        int[] days = meeting.domain.toArray();
+        if (random != null) {
+            for (int i = days.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1), day = days[i];
+                days[i] = days[j];
+                days[j] = day;
+            }
+            return days;
+        }
+        if (valueOrder == ValueOrder.CALENDAR) {
+            return days;
+        }
+        long[] ruledOut = new long[days.length];
+        for (BinaryDateConstraint constraint : constraintsOn.get(meeting.index)) {
+            boolean isLeft = constraint.L_VAL == meeting.index;
+            MeetingVariable other = variables.get(isLeft ? constraint.R_VAL : constraint.L_VAL);
+            if (other.isAssigned()) {
+                continue;
+            }
+            // Read the constraint with the neighbor on the left
+            Operator operator = isLeft ? constraint.OPERATOR.converse() : constraint.OPERATOR;
+            for (int i = 0; i < days.length; i++) {
+                ruledOut[i] += countRuledOut(other.domain, operator, days[i]);
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < days.length; i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingLong(i -> ruledOut[i]));
+        int[] ordered = new int[days.length];
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i] = days[order.get(i)];
+        }
+        return ordered;
+    }
+
+    /**
+     * Counts the days of a domain that fail "day operator value", by popcounts
+     * over the domain's bitset.
+     */
+    private static int countRuledOut(Domain domain, Operator operator, int value) {
+        boolean present = domain.contains(value);
+        int before = domain.countBelow(value), after = domain.size() - before - (present ? 1 : 0);
+        switch (operator) {
+        case EQ:
+            return domain.size() - (present ? 1 : 0);
+        case NE:
+            return present ? 1 : 0;
+        case LT:
+            return domain.size() - before;
+        case LE:
+            return after;
+        case GT:
+            return domain.size() - after;
+        default:
+            return before;
+        }
+    }
+
+    /**
+     * Checks the meeting just assigned against the constraints it shares with
+     * other assigned meetings; every other pair of assigned meetings was
+     * already checked when the later of the two was assigned.
+     *
+     * @param meeting The meeting that was just assigned
+     * @param depth   The depth it was assigned at, whose conflict set gains the
+     *                depth of a meeting it conflicts with
+     * @return Whether the meeting's assignment is consistent with the others
+     */
+    private boolean checkConsistency(MeetingVariable meeting, int depth) {
+        for (BinaryDateConstraint constraint : constraintsOn.get(meeting.index)) {
+            MeetingVariable left = variables.get(constraint.L_VAL), right = variables.get(constraint.R_VAL);
+            if (!left.isAssigned() || !right.isAssigned()) {
+                continue;
+            }
+            if (stats != null) {
+                stats.checks++;
+            }
+            if (!constraint.OPERATOR.test(left.assignment, right.assignment)) {
+                conflicts[depth].set(depthOf[left == meeting ? right.index : left.index]);
+                return false;
+            }
+        }
+        for (CustomConstraint custom : customsOn.get(meeting.index)) {
+            int[] scope = custom.scope(), days = new int[scope.length];
+            for (int i = 0; i < scope.length; i++) {
+                days[i] = variables.get(scope[i]).assignment;
+            }
+            if (stats != null) {
+                stats.checks++;
+            }
+            if (!custom.check(days, rangeStart)) {
+                for (int other : scope) {
+                    if (other != meeting.index && depthOf[other] >= 0) {
+                        conflicts[depth].set(depthOf[other]);
+                    }
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Private Classes */
+
+    /**
+     * A subtree of the search, searched from a private copy of the solver's
+     * state. Near the root a subtree forks one subtask per date of its next
+     * meeting, sharing out its split budget, until there are enough subtasks
+     * to keep every thread busy; below that, one thread searches it depth-first.
+     */
+    private static class Subtree extends RecursiveTask<List<LocalDate>> {
+        private static final long serialVersionUID = 1L;
+
+        private final CSP csp;
+        private final int split;
+
+        Subtree(CSP csp, int split) {
+            this.csp = csp;
+            this.split = split;
+        }
+
+        @Override
+        protected List<LocalDate> compute() {
+            if (csp.stopped()) {
+                return null;
+            }
+            if (split <= 1 || csp.assigned == csp.variables.size()) {
+                List<LocalDate> solution = csp.handleAssignments();
+                if (solution != null) {
+                    csp.stop.set(true);
+                }
+                return solution;
+            }
+            MeetingVariable current = csp.getCurrentMeeting();
+            int[] days = csp.orderDates(current);
+            List<Subtree> children = new ArrayList<>();
+            for (int day : days) {
+                CSP child = new CSP(csp);
+                MeetingVariable meeting = child.variables.get(current.index);
+                meeting.assignment = day;
+                if (child.infer(meeting, child.descend(meeting))) {
+                    children.add(new Subtree(child, split / days.length));
+                } else {
+                    csp.absorbStats(child);
+                }
+            }
+            // Fork all but the first child, which this thread searches itself;
+            // idle threads steal the others from the far end of our deque
+            for (int i = children.size() - 1; i > 0; i--) {
+                children.get(i).fork();
+            }
+            List<LocalDate> solution = children.isEmpty() ? null : children.get(0).compute();
+            for (int i = 1; i < children.size(); i++) {
+                List<LocalDate> found = children.get(i).join();
+                solution = solution == null ? found : solution;
+            }
+            for (Subtree child : children) {
+                csp.absorbStats(child.csp);
+            }
+            return solution;
+        }
+    }
+
+    /**
+     * Backtracking search turned inside out: the search's stack of meetings and
+     * the dates each has left to try are kept in arrays rather than on the call
+     * stack, so the search can stop at each solution and resume from it.
+     */
+    private class SolutionIterator implements Iterator<List<LocalDate>> {
+        // The dates each depth tries, how many of them it has tried, and the
+        // trail mark to undo its current date to, or -1 if it has none
+        private final int[][] days;
+        private final int[] tried, marks;
+        private int depth;
+        private List<LocalDate> next;
+        private boolean started;
+
+        SolutionIterator() {
+            this.days = new int[variables.size()][];
+            this.tried = new int[variables.size()];
+            this.marks = new int[variables.size()];
+            this.depth = -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public List<LocalDate> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<LocalDate> solution = next;
+            next = null;
+            return solution;
+        }
+
+        private List<LocalDate> advance() {
+            if (!started) {
+                started = true;
+                if (!propagate()) {
+                    return null;
+                }
+                if (variables.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                open();
+            }
+            while (depth >= 0) {
+                MeetingVariable current = variables.get(order[depth]);
+                if (marks[depth] >= 0) {
+                    retract(current, depth, marks[depth]);
+                    marks[depth] = -1;
+                }
+                if (tried[depth] == days[depth].length) {
+                    assigned--;
+                    depthOf[current.index] = -1;
+                    depth--;
+                    continue;
+                }
+                marks[depth] = trail.mark();
+                current.assignment = days[depth][tried[depth]++];
+                if (!infer(current, depth)) {
+                    continue;
+                }
+                if (assigned == variables.size()) {
+                    return gatherCompleteAssignment(new ArrayList<LocalDate>());
+                }
+                open();
+            }
+            return null;
+        }
+
+        // Descends to the next meeting, with none of its dates tried yet
+        private void open() {
+            MeetingVariable current = getCurrentMeeting();
+            depth = descend(current);
+            days[depth] = orderDates(current);
+            tried[depth] = 0;
+            marks[depth] = -1;
+        }
+    }
+
+    /**
+     * One direction of a binary constraint: each of the tail meeting's dates
+     * must be supported by some date of the head meeting.
+     */
+    private static class Arc {
+        final int id, tail, head;
+        final BinaryDateConstraint constraint;
+
+        Arc(int id, int tail, int head, BinaryDateConstraint constraint) {
+            this.id = id;
+            this.tail = tail;
+            this.head = head;
+            this.constraint = constraint;
+        }
+
+        /**
+         * @return The constraint's operator as read with the tail on the left,
+         *         e.g. < for the backward arc of 1 > 0
+         */
+        Operator operator() {
+            return tail == constraint.L_VAL ? constraint.OPERATOR : constraint.OPERATOR.converse();
+        }
+    }
+
+    /**
+     * A meeting's domain of day offsets from the start of the range, and the
+     * offset it is assigned during search.
+     */
+    private static class MeetingVariable {
+        static final int UNASSIGNED = -1;
+
+        final int index;
+        final Domain domain;
+        int assignment;
+
+        MeetingVariable(int index, int days) {
+            this.index = index;
+            this.domain = new Domain(days);
+            this.assignment = UNASSIGNED;
         }
 
-        public LocalDate getAssignment() {
-            return this.assignment;
+        MeetingVariable(MeetingVariable other) {
+            this.index = other.index;
+            this.domain = new Domain(other.domain);
+            this.assignment = other.assignment;
         }
 
-        public void setAssignment(LocalDate date) {
-            this.assignment = date;
+        public boolean isAssigned() {
+            return this.assignment != UNASSIGNED;
         }
 
         public void removeAssignment() {
-            this.assignment = null;
+            this.assignment = UNASSIGNED;
         }
 
     }
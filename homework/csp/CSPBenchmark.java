@@ -0,0 +1,144 @@
+package csp;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reports how CSP.solve scales on generated instances: the solve time and
+ * nodes tried as the number of meetings grows, under each inference mode, and
+ * as the constraint density crosses the phase transition, where instances are
+ * hardest. Each point is the median over several seeded instances, and a
+ * solve that runs past the timeout is interrupted and counted as such.
+ */
+public class CSPBenchmark {
+
+    public static final int[] SIZES = { 10, 100, 1_000, 10_000 };
+    public static final int HORIZON = 14, TRANSITION_MEETINGS = 60, TRANSITION_HORIZON = 4, RUNS = 5;
+    // Densities as fractions of the estimated critical density
+    public static final double SCALING_DENSITY = 0.1, UNARY_SHARE = 0.2;
+    public static final double[] TRANSITION_DENSITIES = { 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 1.0, 1.1, 1.2, 1.4 };
+    public static final long TIMEOUT_MILLIS = 5_000, STACK_BYTES = 1L << 28;
+    public static final LocalDate RANGE_START = LocalDate.of(2019, 1, 1);
+
+    public static void main(String[] args) throws InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : RUNS;
+        // Backtracking recurses once per meeting, deeper than a default
+        // thread stack allows at the largest sizes
+        ExecutorService solver = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(null, runnable, "csp-benchmark", STACK_BYTES);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Warm up the JIT so the first sizes are not penalized
+        for (CSP.Inference inference : CSP.Inference.values()) {
+            measure(solver, 0, 200, HORIZON, SCALING_DENSITY, inference, 10);
+        }
+
+        System.out.println("meetings  inference          median ms        nodes  solved/unsolvable/timed out");
+        for (int size : SIZES) {
+            for (CSP.Inference inference : CSP.Inference.values()) {
+                report(String.format("%8d  %-16s", size, inference),
+                        measure(solver, size, size, HORIZON, SCALING_DENSITY, inference, runs));
+            }
+        }
+
+        System.out.printf("%nphase transition: %d meetings over %d days, critical density estimate %.2f%n",
+                TRANSITION_MEETINGS, TRANSITION_HORIZON, InstanceGenerator.criticalDensity(TRANSITION_HORIZON));
+        System.out.println(" density  inference          median ms        nodes  solved/unsolvable/timed out");
+        for (double density : TRANSITION_DENSITIES) {
+            for (CSP.Inference inference : CSP.Inference.values()) {
+                report(String.format("%8.2f  %-16s", density * InstanceGenerator.criticalDensity(TRANSITION_HORIZON),
+                        inference), measure(solver, (long) (density * 100), TRANSITION_MEETINGS, TRANSITION_HORIZON,
+                        density, inference, runs));
+            }
+        }
+        solver.shutdownNow();
+    }
+
+    /** Helper Methods */
+
+    /**
+     * Solves the given number of instances, each generated from its own seed
+     * so that every inference mode meets the same instances.
+     *
+     * @param seed    Seed of the first instance
+     * @param density Constraints per meeting, as a fraction of the critical
+     *                density for the horizon
+     */
+    private static Run[] measure(ExecutorService solver, long seed, int nMeetings, int horizon, double density,
+            CSP.Inference inference, int runs) throws InterruptedException {
+        Run[] results = new Run[runs];
+        for (int i = 0; i < runs; i++) {
+            Set<DateConstraint> constraints = new InstanceGenerator(seed * 1_000 + i).generate(nMeetings,
+                    RANGE_START, horizon, density * InstanceGenerator.criticalDensity(horizon), UNARY_SHARE);
+            CSP csp = new CSP(nMeetings, RANGE_START, RANGE_START.plusDays(horizon - 1), constraints);
+            csp.inference(inference);
+            csp.collectStats(true);
+            Future<Run> run = solver.submit(() -> {
+                long start = System.nanoTime();
+                List<LocalDate> solution = csp.solve();
+                return new Run(System.nanoTime() - start, csp.stats().nodes(), solution != null);
+            });
+            try {
+                results[i] = run.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Interrupting the search makes it give up at its next check
+                run.cancel(true);
+                results[i] = null;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Solve failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    // Prints the median time and nodes of the runs, a timed out run counting
+    // as slower than any other
+    private static void report(String label, Run[] runs) {
+        long[] nanos = new long[runs.length], nodes = new long[runs.length];
+        int solved = 0, unsolvable = 0, timedOut = 0;
+        for (int i = 0; i < runs.length; i++) {
+            if (runs[i] == null) {
+                nanos[i] = nodes[i] = Long.MAX_VALUE;
+                timedOut++;
+                continue;
+            }
+            nanos[i] = runs[i].nanos;
+            nodes[i] = runs[i].nodes;
+            if (runs[i].solved) {
+                solved++;
+            } else {
+                unsolvable++;
+            }
+        }
+        Arrays.sort(nanos);
+        Arrays.sort(nodes);
+        long medianNanos = nanos[runs.length / 2], medianNodes = nodes[runs.length / 2];
+        System.out.printf("%s %12s %12s  %d/%d/%d%n", label,
+                medianNanos == Long.MAX_VALUE ? "timeout" : String.format("%.3f", medianNanos / 1e6),
+                medianNodes == Long.MAX_VALUE ? "-" : Long.toString(medianNodes), solved, unsolvable, timedOut);
+    }
+
+    /** Private Classes */
+
+    private static class Run {
+        final long nanos, nodes;
+        final boolean solved;
+
+        Run(long nanos, long nodes, boolean solved) {
+            this.nanos = nanos;
+            this.nodes = nodes;
+            this.solved = solved;
+        }
+    }
+
+}
@@ -0,0 +1,399 @@
+package csp;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * A scheduling problem kept between changes to its constraints. The session
+ * holds the domains left by propagating its constraints, the constraints on
+ * each meeting and the last solution found, so that adding or removing a
+ * constraint only re-propagates and re-solves the meetings the change reaches:
+ * a solution that still satisfies every constraint is kept as it is, and one
+ * that does not is repaired by freeing the meetings of the broken constraint,
+ * holding every other meeting to its date, and freeing one more ring of
+ * neighboring meetings at a time until a repair is found or the whole
+ * connected group of meetings is free.
+ */
+public class CSPSession {
+
+    private final int nMeetings;
+    private final LocalDate rangeStart, rangeEnd;
+    private final Set<DateConstraint> constraints;
+    private final List<List<DateConstraint>> constraintsOn;
+    private final Set<CustomConstraint> customs;
+    private final List<List<CustomConstraint>> customsOn;
+    // Each meeting's domain as last propagated over the constraints of its
+    // connected group
+    private final Domain[] domains;
+    private List<LocalDate> solution;
+
+    /**
+     * Constructs a new session and solves its initial constraints.
+     *
+     * @param nMeetings   The number of meetings that must be scheduled
+     * @param rangeStart  The start date (inclusive) of every meeting's domain
+     * @param rangeEnd    The end date (inclusive) of every meeting's domain
+     * @param constraints Initial date constraints on the meeting times
+     */
+    public CSPSession(int nMeetings, LocalDate rangeStart, LocalDate rangeEnd, Set<DateConstraint> constraints) {
+        this(nMeetings, rangeStart, rangeEnd, constraints, Collections.<CustomConstraint>emptySet());
+    }
+
+    /**
+     * Constructs a new session whose meetings are also held to custom
+     * constraints, and solves its initial constraints.
+     *
+     * @param customs Initial custom constraints on the meeting times
+     * @see #CSPSession(int, LocalDate, LocalDate, Set)
+     */
+    public CSPSession(int nMeetings, LocalDate rangeStart, LocalDate rangeEnd, Set<DateConstraint> constraints,
+            Collection<CustomConstraint> customs) {
+        this.nMeetings = nMeetings;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.constraints = new LinkedHashSet<>();
+        this.constraintsOn = new ArrayList<>();
+        this.customs = new LinkedHashSet<>();
+        this.customsOn = new ArrayList<>();
+        for (int i = 0; i < nMeetings; i++) {
+            constraintsOn.add(new ArrayList<DateConstraint>());
+            customsOn.add(new ArrayList<CustomConstraint>());
+        }
+        for (DateConstraint constraint : constraints) {
+            if (this.constraints.add(constraint)) {
+                index(constraint);
+            }
+        }
+        for (CustomConstraint custom : customs) {
+            if (this.customs.add(custom)) {
+                index(custom);
+            }
+        }
+        this.domains = new Domain[nMeetings];
+        List<Integer> all = allMeetings();
+        this.solution = repropagate(all, false) ? subproblem(all, true).solve() : null;
+    }
+
+    /**
+     * @return The dates of the last solution, indexed by meeting, or null if
+     *         the current constraints have none
+     */
+    public List<LocalDate> solution() {
+        return solution == null ? null : new ArrayList<>(solution);
+    }
+
+    /**
+     * @return The current constraints
+     */
+    public Set<DateConstraint> constraints() {
+        return Collections.unmodifiableSet(constraints);
+    }
+
+    /**
+     * @return The current custom constraints
+     */
+    public Set<CustomConstraint> customs() {
+        return Collections.unmodifiableSet(customs);
+    }
+
+    /**
+     * Adds a constraint, propagating it through the domains of the meetings it
+     * is connected to and repairing the last solution if it breaks it.
+     *
+     * @param constraint The constraint to add
+     * @return The new solution, or null if the constraints now have none
+     */
+    public List<LocalDate> add(DateConstraint constraint) {
+        if (!constraints.add(constraint)) {
+            return solution();
+        }
+        index(constraint);
+        return added(meetingsOf(constraint), dates -> satisfies(constraint, dates));
+    }
+
+    /**
+     * Adds a custom constraint, like a comparison.
+     *
+     * @see #add(DateConstraint)
+     */
+    public List<LocalDate> add(CustomConstraint custom) {
+        if (!customs.add(custom)) {
+            return solution();
+        }
+        index(custom);
+        return added(meetingsOf(custom), custom::isSatisfiedBy);
+    }
+
+    /**
+     * Removes a constraint, recomputing the domains of the meetings it was
+     * connected to. A solution is never broken by removing a constraint, so one
+     * is only searched for if there was none before.
+     *
+     * @param constraint The constraint to remove
+     * @return The new solution, or null if the constraints still have none
+     */
+    public List<LocalDate> remove(DateConstraint constraint) {
+        if (!constraints.remove(constraint)) {
+            return solution();
+        }
+        for (int meeting : meetingsOf(constraint)) {
+            constraintsOn.get(meeting).remove(constraint);
+        }
+        return removed(meetingsOf(constraint));
+    }
+
+    /**
+     * Removes a custom constraint, like a comparison.
+     *
+     * @see #remove(DateConstraint)
+     */
+    public List<LocalDate> remove(CustomConstraint custom) {
+        if (!customs.remove(custom)) {
+            return solution();
+        }
+        for (int meeting : meetingsOf(custom)) {
+            customsOn.get(meeting).remove(custom);
+        }
+        return removed(meetingsOf(custom));
+    }
+
+    /** Helper Methods */
+
+    private void index(DateConstraint constraint) {
+        for (int meeting : meetingsOf(constraint)) {
+            constraintsOn.get(meeting).add(constraint);
+        }
+    }
+
+    private void index(CustomConstraint custom) {
+        for (int meeting : meetingsOf(custom)) {
+            customsOn.get(meeting).add(custom);
+        }
+    }
+
+    /**
+     * Propagates a constraint just added over the given meetings and repairs
+     * the last solution if it breaks it.
+     *
+     * @param satisfied Whether a solution satisfies the added constraint
+     */
+    private List<LocalDate> added(List<Integer> meetings, Predicate<List<LocalDate>> satisfied) {
+        List<Integer> group = group(meetings);
+        // Domains only ever shrink as constraints are added, so the old ones
+        // are a sound place for propagation to start from
+        if (!repropagate(group, true) || solution == null) {
+            solution = null;
+        } else if (!satisfied.test(solution)) {
+            solution = repair(meetings, group);
+        }
+        return solution();
+    }
+
+    // The removed constraint may have been all that pruned some days, so its
+    // meetings' groups are propagated again from full domains
+    private List<LocalDate> removed(List<Integer> meetings) {
+        Set<Integer> affected = new LinkedHashSet<>();
+        for (int meeting : meetings) {
+            affected.addAll(group(Collections.singletonList(meeting)));
+        }
+        if (repropagate(new ArrayList<>(affected), false) && solution == null) {
+            solution = subproblem(allMeetings(), true).solve();
+        }
+        return solution();
+    }
+
+    private static List<Integer> meetingsOf(CustomConstraint custom) {
+        return Arrays.stream(custom.scope()).boxed().collect(Collectors.toList());
+    }
+
+    private static List<Integer> meetingsOf(DateConstraint constraint) {
+        return constraint.arity() == 1 ? Collections.singletonList(constraint.L_VAL)
+                : Arrays.asList(constraint.L_VAL, ((BinaryDateConstraint) constraint).R_VAL);
+    }
+
+    private List<Integer> allMeetings() {
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < nMeetings; i++) {
+            all.add(i);
+        }
+        return all;
+    }
+
+    private static boolean satisfies(DateConstraint constraint, List<LocalDate> dates) {
+        LocalDate left = dates.get(constraint.L_VAL);
+        LocalDate right = constraint.arity() == 1 ? ((UnaryDateConstraint) constraint).R_VAL
+                : dates.get(((BinaryDateConstraint) constraint).R_VAL);
+        return constraint.OPERATOR.test(left, right);
+    }
+
+    /**
+     * @return The given meetings and every meeting connected to them by a
+     *         chain of constraints
+     */
+    private List<Integer> group(Collection<Integer> meetings) {
+        boolean[] seen = new boolean[nMeetings];
+        List<Integer> group = new ArrayList<>();
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int meeting : meetings) {
+            if (!seen[meeting]) {
+                seen[meeting] = true;
+                queue.add(meeting);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int meeting = queue.poll();
+            group.add(meeting);
+            for (int neighbor : neighborsOf(meeting)) {
+                if (!seen[neighbor]) {
+                    seen[neighbor] = true;
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return group;
+    }
+
+    private List<Integer> neighborsOf(int meeting) {
+        List<Integer> neighbors = new ArrayList<>();
+        for (DateConstraint constraint : constraintsOn.get(meeting)) {
+            for (int other : meetingsOf(constraint)) {
+                if (other != meeting) {
+                    neighbors.add(other);
+                }
+            }
+        }
+        for (CustomConstraint custom : customsOn.get(meeting)) {
+            for (int other : custom.scope()) {
+                if (other != meeting) {
+                    neighbors.add(other);
+                }
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Propagates the constraints of a connected group of meetings and keeps
+     * the domains it leaves them.
+     *
+     * @param group  Meetings with no constraints to meetings outside them
+     * @param seeded Whether to start from the domains last kept, rather than
+     *               from full ones
+     * @return false if some meeting's domain was emptied, meaning no solution
+     *         exists
+     */
+    private boolean repropagate(List<Integer> group, boolean seeded) {
+        CSP csp = subproblem(group, seeded);
+        boolean consistent = csp.propagate();
+        for (int i = 0; i < group.size(); i++) {
+            domains[group.get(i)] = new Domain(csp.domain(i));
+        }
+        return consistent;
+    }
+
+    /**
+     * Re-solves the freed meetings with every other meeting held to its date
+     * in the last solution, freeing the neighbors of the freed meetings each
+     * time that fails.
+     *
+     * @param freed Meetings to free first
+     * @param group The connected group of meetings they belong to
+     * @return The repaired solution, or null if even the whole group cannot be
+     *         re-solved
+     */
+    private List<LocalDate> repair(List<Integer> freed, List<Integer> group) {
+        Set<Integer> free = new LinkedHashSet<>(freed);
+        while (true) {
+            List<Integer> meetings = new ArrayList<>(free);
+            List<LocalDate> repaired = subproblem(meetings, true).solve();
+            if (repaired != null) {
+                List<LocalDate> merged = new ArrayList<>(solution);
+                for (int i = 0; i < meetings.size(); i++) {
+                    merged.set(meetings.get(i), repaired.get(i));
+                }
+                return merged;
+            }
+            if (free.size() == group.size()) {
+                return null;
+            }
+            for (int meeting : meetings) {
+                free.addAll(neighborsOf(meeting));
+            }
+        }
+    }
+
+    /**
+     * Builds a CSP over the given meetings alone, numbered by their position in
+     * the list. A constraint between one of them and a meeting outside them
+     * becomes a unary constraint against the outside meeting's date in the
+     * last solution. A custom constraint reaching outside them brings the
+     * outside meetings along, numbered after them and held to their dates.
+     *
+     * @param meetings Meetings to solve for
+     * @param seeded   Whether to narrow each domain to the one last kept
+     */
+    private CSP subproblem(List<Integer> meetings, boolean seeded) {
+        int[] local = new int[nMeetings];
+        Arrays.fill(local, -1);
+        for (int i = 0; i < meetings.size(); i++) {
+            local[meetings.get(i)] = i;
+        }
+        int size = meetings.size();
+        Set<DateConstraint> translated = new LinkedHashSet<>();
+        Set<CustomConstraint> seen = new HashSet<>();
+        List<CustomConstraint> customs = new ArrayList<>();
+        for (int meeting : meetings) {
+            for (CustomConstraint custom : customsOn.get(meeting)) {
+                if (!seen.add(custom)) {
+                    continue;
+                }
+                int[] scope = custom.scope();
+                for (int i = 0; i < scope.length; i++) {
+                    if (local[scope[i]] < 0) {
+                        local[scope[i]] = size++;
+                        translated.add(new UnaryDateConstraint(local[scope[i]], "==", solution.get(scope[i])));
+                    }
+                    scope[i] = local[scope[i]];
+                }
+                customs.add(custom.renumber(scope));
+            }
+        }
+        for (int meeting : meetings) {
+            for (DateConstraint constraint : constraintsOn.get(meeting)) {
+                if (constraint.arity() == 1) {
+                    translated.add(new UnaryDateConstraint(local[meeting], constraint.OP,
+                            ((UnaryDateConstraint) constraint).R_VAL));
+                    continue;
+                }
+                BinaryDateConstraint binary = (BinaryDateConstraint) constraint;
+                boolean isLeft = binary.L_VAL == meeting;
+                int other = isLeft ? binary.R_VAL : binary.L_VAL;
+                if (local[other] < 0 || local[other] >= meetings.size()) {
+                    Operator operator = isLeft ? binary.OPERATOR : binary.OPERATOR.converse();
+                    translated.add(new UnaryDateConstraint(local[meeting], operator.SYMBOL, solution.get(other)));
+                } else if (isLeft) {
+                    translated.add(new BinaryDateConstraint(local[meeting], binary.OP, local[other]));
+                }
+            }
+        }
+        CSP csp = new CSP(size, rangeStart, rangeEnd, translated, customs);
+        for (int i = 0; seeded && i < meetings.size(); i++) {
+            if (domains[meetings.get(i)] != null) {
+                csp.seed(i, domains[meetings.get(i)]);
+            }
+        }
+        return csp;
+    }
+
+}
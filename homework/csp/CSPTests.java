@@ -6,9 +6,18 @@ import org.junit.Test;
 import org.junit.rules.Timeout;
 import java.time.LocalDate;
 import java.util.Set;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CSPTests {
 
@@ -69,6 +78,22 @@ public class CSPTests {
         }
     }
 
+    /**
+     * Tests whether a given solution satisfies all constraints, custom ones
+     * included
+     *
+     * @param customs The custom constraints the solution must also satisfy
+     */
+    public static void testSolution(List<LocalDate> soln, Set<DateConstraint> constraints,
+            Collection<CustomConstraint> customs) {
+        testSolution(soln, constraints);
+        for (CustomConstraint c : customs) {
+            if (!c.isSatisfiedBy(soln)) {
+                fail("[X] Constraint Failed: " + c);
+            }
+        }
+    }
+
     // =================================================
     // Unit Tests
     // =================================================
@@ -233,4 +258,949 @@ public class CSPTests {
         testSolution(solution, constraints);
     }
 
+    @Test
+    public void CSP_t10() {
+        Set<DateConstraint> constraints = new HashSet<>(Arrays.asList(new BinaryDateConstraint(0, "<", 1),
+                new BinaryDateConstraint(1, "<", 2), new BinaryDateConstraint(2, "<", 0)));
+
+        // A cycle of orderings can never be satisfied: ARC consistency whittles
+        // the year-long domains down to nothing before search even starts
+        List<LocalDate> solution = CSP.solve(3, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 12, 31), constraints);
+
+        assertNull(solution);
+    }
+
+    @Test
+    public void CSP_t11() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 29; i++) {
+            constraints.add(new BinaryDateConstraint(i, ">", i + 1));
+        }
+        constraints.add(new UnaryDateConstraint(0, "<=", LocalDate.of(2019, 1, 31)));
+        constraints.add(new UnaryDateConstraint(15, "!=", LocalDate.of(2019, 1, 15)));
+
+        // 30 meetings in a descending chain squeezed into one month, with one
+        // day ruled out in the middle: ARC consistency narrows each meeting to
+        // the dates its place in the chain allows
+        List<LocalDate> solution = CSP.solve(30, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 12, 31), constraints);
+
+        testSolution(solution, constraints);
+    }
+
+    @Test
+    public void CSP_t12() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 60; i++) {
+            for (int j = i + 1; j < 60; j++) {
+                constraints.add(new BinaryDateConstraint(i, "!=", j));
+            }
+        }
+
+        // 1,770 constraints, but each assignment need only be checked against
+        // the 59 that mention the meeting just assigned
+        List<LocalDate> solution = CSP.solve(60, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 3, 1), constraints);
+
+        testSolution(solution, constraints);
+    }
+
+    @Test
+    public void CSP_t13() {
+        // Each operator's converse holds with the operands swapped
+        long[] days = { 17897, 17898, 17899 };
+        for (Operator operator : Operator.values()) {
+            assertSame(operator, Operator.of(operator.SYMBOL));
+            for (long left : days) {
+                for (long right : days) {
+                    assertEquals(operator.test(left, right), operator.converse().test(right, left));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void CSP_t14() {
+        new BinaryDateConstraint(0, "=<", 1);
+    }
+
+    @Test
+    public void CSP_t15() {
+        Set<DateConstraint> constraints = new HashSet<>(
+                Arrays.asList(new UnaryDateConstraint(0, ">", LocalDate.of(2019, 1, 1)),
+                        new UnaryDateConstraint(1, ">", LocalDate.of(2019, 2, 1)),
+                        new UnaryDateConstraint(2, ">", LocalDate.of(2019, 3, 1)),
+                        new UnaryDateConstraint(3, ">", LocalDate.of(2019, 4, 1)),
+                        new UnaryDateConstraint(4, ">", LocalDate.of(2019, 5, 1)), new BinaryDateConstraint(0, ">", 4),
+                        new BinaryDateConstraint(1, ">", 3), new BinaryDateConstraint(2, "!=", 3),
+                        new BinaryDateConstraint(4, "!=", 0), new BinaryDateConstraint(3, ">", 2)));
+
+        // Every combination of variable and value ordering finds a solution
+        for (CSP.VariableOrder variableOrder : CSP.VariableOrder.values()) {
+            for (CSP.ValueOrder valueOrder : CSP.ValueOrder.values()) {
+                CSP csp = new CSP(5, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 6, 30), constraints);
+                csp.variableOrder(variableOrder);
+                csp.valueOrder(valueOrder);
+                testSolution(csp.solve(), constraints);
+            }
+        }
+    }
+
+    @Test
+    public void CSP_t16() {
+        Set<DateConstraint> constraints = new HashSet<>(Arrays.asList(new BinaryDateConstraint(0, "<", 1),
+                new BinaryDateConstraint(0, "<", 2), new BinaryDateConstraint(0, "<", 3)));
+
+        // Meeting 0 must precede three others; LCV tries its earliest date first
+        // since it rules out the fewest of theirs
+        CSP csp = new CSP(4, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 10), constraints);
+        csp.valueOrder(CSP.ValueOrder.LCV);
+        List<LocalDate> solution = csp.solve();
+
+        testSolution(solution, constraints);
+        assertEquals(LocalDate.of(2019, 1, 1), solution.get(0));
+
+        // With no meetings, the empty schedule is the only solution
+        assertEquals(0, CSP.solve(0, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 10), new HashSet<>()).size());
+    }
+
+    @Test
+    public void CSP_t17() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            for (int j = i + 1; j < 6; j++) {
+                constraints.add(new BinaryDateConstraint(i, "!=", j));
+            }
+        }
+
+        // 6 meetings on 5 distinct days cannot happen, though every pair of
+        // them can: arc consistency alone cannot tell, so each inference mode
+        // has to exhaust the search and undo all of its pruning
+        for (CSP.Inference inference : CSP.Inference.values()) {
+            CSP csp = new CSP(6, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 5), constraints);
+            csp.inference(inference);
+            assertNull(csp.solve());
+        }
+    }
+
+    @Test
+    public void CSP_t18() {
+        Set<DateConstraint> constraints = new HashSet<>(
+                Arrays.asList(new UnaryDateConstraint(0, ">", LocalDate.of(2019, 1, 1)),
+                        new UnaryDateConstraint(1, ">", LocalDate.of(2019, 2, 1)),
+                        new UnaryDateConstraint(2, ">", LocalDate.of(2019, 3, 1)),
+                        new UnaryDateConstraint(3, ">", LocalDate.of(2019, 4, 1)),
+                        new UnaryDateConstraint(4, ">", LocalDate.of(2019, 5, 1)), new BinaryDateConstraint(0, ">", 4),
+                        new BinaryDateConstraint(1, ">", 3), new BinaryDateConstraint(2, "!=", 3),
+                        new BinaryDateConstraint(4, "!=", 0), new BinaryDateConstraint(3, ">", 2)));
+
+        // Every inference mode finds a solution, and backtracking restores the
+        // dates pruned along the way
+        for (CSP.Inference inference : CSP.Inference.values()) {
+            for (CSP.ValueOrder valueOrder : CSP.ValueOrder.values()) {
+                CSP csp = new CSP(5, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 6, 30), constraints);
+                csp.inference(inference);
+                csp.valueOrder(valueOrder);
+                testSolution(csp.solve(), constraints);
+            }
+        }
+
+        // An unsatisfiable unary constraint empties a domain up front
+        constraints.add(new UnaryDateConstraint(0, "<", LocalDate.of(2019, 1, 1)));
+        assertNull(CSP.solve(5, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 6, 30), constraints));
+    }
+
+    @Test
+    public void CSP_t19() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 299; i++) {
+            constraints.add(new BinaryDateConstraint(i, "<", i + 1));
+            constraints.add(new BinaryDateConstraint(i, "!=", (i * 7 + 3) % 300));
+        }
+        constraints.add(new UnaryDateConstraint(0, ">=", LocalDate.of(2025, 1, 1)));
+
+        // 300 meetings in a chain over a ten year horizon: each domain is a
+        // bitset of 3,652 days, cut by whole words at a time
+        List<LocalDate> solution = CSP.solve(300, LocalDate.of(2019, 1, 1), LocalDate.of(2028, 12, 31), constraints);
+
+        testSolution(solution, constraints);
+    }
+
+    @Test
+    public void CSP_t20() {
+        Domain domain = new Domain(200);
+        Domain.Trail trail = new Domain.Trail();
+        int mark = trail.mark();
+
+        // Restricting by each operator clears the right days...
+        assertTrue(domain.restrict(Operator.GE, 10, trail));
+        assertTrue(domain.restrict(Operator.LT, 150, trail));
+        assertTrue(domain.restrict(Operator.NE, 64, trail));
+        assertFalse(domain.restrict(Operator.LE, 500, trail));
+        assertEquals(139, domain.size());
+        assertEquals(10, domain.min());
+        assertEquals(149, domain.max());
+        assertEquals(63, domain.next(63));
+        assertEquals(65, domain.next(64));
+        assertEquals(54, domain.countBelow(65));
+
+        // ...and undoing the trail restores every one of them
+        trail.undo(mark);
+        assertEquals(200, domain.size());
+        assertEquals(0, domain.min());
+        assertEquals(199, domain.max());
+        assertTrue(domain.contains(64));
+    }
+
+    @Test
+    public void CSP_t21() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 999; i++) {
+            constraints.add(new BinaryDateConstraint(i, i % 3 == 0 ? "<" : "<=", i + 1));
+            if (i % 10 == 0) {
+                constraints.add(new BinaryDateConstraint(i + 1, ">=", i));
+                constraints.add(new BinaryDateConstraint(999 - i, ">", 0));
+            }
+        }
+        constraints.add(new BinaryDateConstraint(501, "==", 500));
+        constraints.add(new UnaryDateConstraint(250, ">=", LocalDate.of(2020, 6, 1)));
+
+        // 1,000 meetings tied only by orderings: bounds propagation settles
+        // them without search, each on its earliest date
+        List<LocalDate> solution = CSP.solve(1000, LocalDate.of(2019, 1, 1), LocalDate.of(2021, 12, 31), constraints);
+
+        testSolution(solution, constraints);
+        assertEquals(LocalDate.of(2019, 1, 1), solution.get(0));
+        assertEquals(solution.get(500), solution.get(501));
+    }
+
+    @Test
+    public void CSP_t22() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 199; i++) {
+            constraints.add(new BinaryDateConstraint(i, "<=", i + 1));
+        }
+        constraints.add(new BinaryDateConstraint(199, "<", 0));
+
+        // A long cycle of orderings with one strict link is caught by the
+        // bound that keeps being raised round it, not by exhausting 30 years
+        List<LocalDate> solution = CSP.solve(200, LocalDate.of(2000, 1, 1), LocalDate.of(2029, 12, 31), constraints);
+
+        assertNull(solution);
+    }
+
+    @Test
+    public void CSP_t23() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            constraints.add(new BinaryDateConstraint(i, "!=", (i + 1) % 40));
+            constraints.add(new BinaryDateConstraint(i, "!=", (i + 7) % 40));
+            constraints.add(new UnaryDateConstraint(i, i % 2 == 0 ? "<=" : ">=", LocalDate.of(2019, 1, 3)));
+        }
+
+        // Both parallel modes agree with the sequential search on a solvable
+        // instance...
+        for (CSP.Parallelism parallelism : CSP.Parallelism.values()) {
+            CSP csp = new CSP(40, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 5), constraints);
+            csp.parallelism(parallelism, 8);
+            testSolution(csp.solve(), constraints);
+        }
+
+        // ...and on one with no solution
+        Set<DateConstraint> pigeonhole = new HashSet<>();
+        for (int i = 0; i < 7; i++) {
+            for (int j = i + 1; j < 7; j++) {
+                pigeonhole.add(new BinaryDateConstraint(i, "!=", j));
+            }
+        }
+        for (CSP.Parallelism parallelism : CSP.Parallelism.values()) {
+            CSP csp = new CSP(7, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 6), pigeonhole);
+            csp.parallelism(parallelism, 8);
+            assertNull(csp.solve());
+        }
+    }
+
+    @Test
+    public void CSP_t24() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 24; i++) {
+            constraints.add(new BinaryDateConstraint(i, "!=", i + 1));
+        }
+        for (int i = 25; i < 29; i++) {
+            constraints.add(new UnaryDateConstraint(i, "<=", LocalDate.of(2019, 1, 3)));
+            for (int j = i + 1; j < 29; j++) {
+                constraints.add(new BinaryDateConstraint(i, "!=", j));
+            }
+        }
+
+        // 25 loosely chained meetings assigned first, then 4 meetings that can
+        // never fit on 3 days: backjumping sees the last 4 alone are to blame
+        // and jumps straight past the rest, instead of retrying the last 4
+        // under each of the 5 * 4^24 arrangements of the first 25
+        for (CSP.Inference inference : new CSP.Inference[] { CSP.Inference.NONE,
+                CSP.Inference.FORWARD_CHECKING }) {
+            CSP csp = new CSP(29, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 5), constraints);
+            csp.variableOrder(CSP.VariableOrder.INDEX);
+            csp.inference(inference);
+            csp.nogoods(1000);
+            assertNull(csp.solve());
+        }
+    }
+
+    @Test
+    public void CSP_t25() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            constraints.add(new BinaryDateConstraint(i, "!=", (i + 1) % 30));
+            constraints.add(new BinaryDateConstraint(i, "!=", (i + 4) % 30));
+            constraints.add(new BinaryDateConstraint(i, i % 3 == 0 && i < 20 ? ">" : "!=", (i + 9) % 30));
+        }
+
+        // Backjumping and nogoods never skip a solution, whichever inference
+        // they work with
+        for (CSP.Inference inference : CSP.Inference.values()) {
+            for (boolean backjumping : new boolean[] { false, true }) {
+                CSP csp = new CSP(30, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 10), constraints);
+                csp.inference(inference);
+                csp.backjumping(backjumping);
+                csp.nogoods(backjumping ? 100 : 0);
+                testSolution(csp.solve(), constraints);
+            }
+        }
+    }
+
+    @Test
+    public void CSP_t26() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 9; i++) {
+            constraints.add(new BinaryDateConstraint(i, "<", i + 1));
+        }
+        for (int i = 10; i < 19; i++) {
+            constraints.add(new BinaryDateConstraint(i, "!=", i + 1));
+        }
+        CSPSession session = new CSPSession(20, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 31), constraints);
+        List<LocalDate> before = session.solution();
+        testSolution(before, constraints);
+
+        // Moving meeting 15 off its date only disturbs its own neighborhood
+        // of the chain of != constraints; the chain of < is never touched
+        DateConstraint moved = new UnaryDateConstraint(15, "!=", before.get(15));
+        List<LocalDate> after = session.add(moved);
+        testSolution(after, session.constraints());
+        assertNotEquals(before.get(15), after.get(15));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(before.get(i), after.get(i));
+        }
+
+        // A solution that still holds is kept as it is
+        assertEquals(after, session.add(new BinaryDateConstraint(0, "<", 9)));
+
+        // An impossible constraint leaves no solution until it is removed
+        DateConstraint impossible = new BinaryDateConstraint(9, "<", 0);
+        assertNull(session.add(impossible));
+        assertNull(session.add(new UnaryDateConstraint(12, ">", LocalDate.of(2019, 1, 5))));
+        testSolution(session.remove(impossible), session.constraints());
+        assertEquals(session.solution(), session.remove(moved));
+    }
+
+    @Test
+    public void CSP_t27() {
+        Random random = new Random(282);
+        String[] operators = { "==", "!=", "<", "<=", ">", ">=" };
+        LocalDate start = LocalDate.of(2019, 1, 1), end = LocalDate.of(2019, 1, 6);
+
+        // Through a long run of random additions and removals, the session
+        // always agrees with solving its constraints from scratch
+        CSPSession session = new CSPSession(8, start, end, new HashSet<DateConstraint>());
+        List<DateConstraint> added = new ArrayList<>();
+        for (int step = 0; step < 300; step++) {
+            List<LocalDate> solution;
+            if (added.size() > 6 && random.nextInt(3) == 0) {
+                solution = session.remove(added.remove(random.nextInt(added.size())));
+            } else {
+                int left = random.nextInt(8), right = (left + 1 + random.nextInt(7)) % 8;
+                String operator = operators[random.nextInt(operators.length)];
+                DateConstraint constraint = random.nextInt(4) == 0
+                        ? new UnaryDateConstraint(left, operator, start.plusDays(random.nextInt(6)))
+                        : new BinaryDateConstraint(left, operator, right);
+                added.add(constraint);
+                solution = session.add(constraint);
+            }
+            Set<DateConstraint> current = session.constraints();
+            if (solution == null) {
+                assertNull(CSP.solve(8, start, end, new HashSet<>(current)));
+            } else {
+                testSolution(solution, current);
+            }
+        }
+    }
+
+    @Test
+    public void CSP_t28() {
+        Random random = new Random(44);
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 6000; i++) {
+            int left = random.nextInt(2000), right = (left + 1 + random.nextInt(1999)) % 2000;
+            constraints.add(new BinaryDateConstraint(left, "!=", right));
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            constraints.add(new BinaryDateConstraint(i, "<", i + 1));
+            constraints.add(new UnaryDateConstraint(i, "!=", LocalDate.of(2019, 1, 1 + i % 28)));
+        }
+
+        // Thousands of meetings are repaired into a solution well within the
+        // budget, from a greedy start over the propagated domains
+        MinConflicts search = new MinConflicts(2000, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 2, 28), constraints,
+                5000);
+        search.seed(44);
+        List<LocalDate> solution = search.solve();
+        testSolution(solution, constraints);
+        assertEquals(0, search.bestViolations());
+        assertEquals(solution, search.best());
+    }
+
+    @Test
+    public void CSP_t29() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            for (int j = i + 1; j < 6; j++) {
+                constraints.add(new BinaryDateConstraint(i, "!=", j));
+            }
+        }
+
+        // Local search cannot prove 6 meetings never fit on 5 days, so it runs
+        // out its budget, reporting progress and keeping the best it found:
+        // just one clash
+        MinConflicts search = new MinConflicts(6, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 5), constraints, 100);
+        search.seed(29);
+        search.restartSteps(50);
+        long[] reports = new long[1];
+        search.progress((steps, restarts, violations, bestViolations) -> {
+            assertTrue(violations >= bestViolations && bestViolations >= 1);
+            reports[0]++;
+        }, 1000);
+        assertNull(search.solve());
+        assertTrue(reports[0] > 0 && search.restarts() > 0);
+        assertEquals(1, search.bestViolations());
+        assertEquals(6, search.best().size());
+        for (long interval : new long[] { 0, -1 }) {
+            try {
+                search.progress((steps, restarts, violations, bestViolations) -> {
+                }, interval);
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+
+        // Propagation alone proves an emptied domain has no solution
+        constraints.add(new UnaryDateConstraint(0, ">", LocalDate.of(2019, 1, 5)));
+        search = new MinConflicts(6, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 5), constraints, 0);
+        assertNull(search.solve());
+        assertNull(search.best());
+    }
+
+    @Test
+    public void CSP_t30() {
+        Set<DateConstraint> constraints = new HashSet<>(Arrays.asList(
+                new BinaryDateConstraint(0, "<", 1),
+                new BinaryDateConstraint(1, "!=", 2),
+                new BinaryDateConstraint(2, ">=", 0),
+                new UnaryDateConstraint(3, "!=", LocalDate.of(2019, 1, 2)),
+                new BinaryDateConstraint(4, "==", 5)));
+        LocalDate start = LocalDate.of(2019, 1, 1), end = LocalDate.of(2019, 1, 5);
+
+        // Every solution is found exactly once, and matches the brute force
+        // count of the assignments satisfying every constraint
+        long expected = 0;
+        for (int code = 0; code < 15625; code++) {
+            List<LocalDate> dates = new ArrayList<>();
+            for (int i = 0, rest = code; i < 6; i++, rest /= 5) {
+                dates.add(start.plusDays(rest % 5));
+            }
+            boolean satisfies = true;
+            for (DateConstraint d : constraints) {
+                LocalDate right = d.arity() == 1 ? ((UnaryDateConstraint) d).R_VAL
+                        : dates.get(((BinaryDateConstraint) d).R_VAL);
+                satisfies &= d.OPERATOR.test(dates.get(d.L_VAL), right);
+            }
+            expected += satisfies ? 1 : 0;
+        }
+        for (CSP.Inference inference : CSP.Inference.values()) {
+            CSP csp = new CSP(6, start, end, constraints);
+            csp.inference(inference);
+            Set<List<LocalDate>> seen = new HashSet<>();
+            csp.stream().forEach(solution -> {
+                testSolution(solution, constraints);
+                assertTrue(seen.add(solution));
+            });
+            assertEquals(expected, seen.size());
+
+            csp = new CSP(6, start, end, constraints);
+            csp.inference(inference);
+            assertEquals(BigInteger.valueOf(expected), csp.count());
+        }
+    }
+
+    @Test
+    public void CSP_t31() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 40; i += 4) {
+            for (int j = i; j < i + 4; j++) {
+                for (int k = j + 1; k < i + 4; k++) {
+                    constraints.add(new BinaryDateConstraint(j, "!=", k));
+                }
+            }
+        }
+        LocalDate start = LocalDate.of(2019, 1, 1), end = LocalDate.of(2019, 1, 5);
+
+        // 10 independent groups of 4 meetings that must all differ, with 5 * 4
+        // * 3 * 2 ways each, plus 10 free meetings with 5 dates each: far too
+        // many to list, but their counts multiply, and the stream only searches
+        // as far as it is read
+        CSP csp = new CSP(50, start, end, constraints);
+        assertEquals(BigInteger.valueOf(120).pow(10).multiply(BigInteger.valueOf(5).pow(10)), csp.count());
+        csp = new CSP(50, start, end, constraints);
+        assertEquals(3, csp.stream().limit(3).peek(solution -> testSolution(solution, constraints)).count());
+
+        // No meetings have just the one, empty, schedule; no solutions, none
+        assertEquals(BigInteger.ONE, new CSP(0, start, end, new HashSet<DateConstraint>()).count());
+        assertEquals(1, new CSP(0, start, end, new HashSet<DateConstraint>()).stream().count());
+        constraints.add(new BinaryDateConstraint(40, "<", 41));
+        constraints.add(new BinaryDateConstraint(41, "<", 40));
+        assertEquals(BigInteger.ZERO, new CSP(50, start, end, constraints).count());
+        Iterator<List<LocalDate>> solutions = new CSP(50, start, end, constraints).solutions();
+        assertFalse(solutions.hasNext());
+    }
+
+    @Test
+    public void CSP_t32() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 1; i < 3000; i++) {
+            constraints.add(new BinaryDateConstraint((i - 1) / 2, i % 2 == 0 ? "<" : "!=", i));
+            constraints.add(new UnaryDateConstraint(i, "!=", LocalDate.of(2019, 1, 1 + i % 20)));
+        }
+
+        // 3000 meetings linked as a binary tree are placed in one pass from
+        // the root down, with no backtracking to find the holes
+        List<LocalDate> solution = CSP.solve(3000, LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 31), constraints);
+        testSolution(solution, constraints);
+    }
+
+    @Test
+    public void CSP_t33() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 200; i += 5) {
+            for (int j = i; j < i + 5; j++) {
+                constraints.add(new BinaryDateConstraint(j, "!=", i + (j + 1 - i) % 5));
+                constraints.add(new BinaryDateConstraint(j, j % 3 == 0 ? ">" : "!=", i + (j + 2 - i) % 5));
+            }
+        }
+
+        // 40 independent clusters are solved on their own and their
+        // solutions combined, in every parallelism mode
+        LocalDate start = LocalDate.of(2019, 1, 1), end = LocalDate.of(2019, 1, 5);
+        for (CSP.Parallelism parallelism : CSP.Parallelism.values()) {
+            CSP csp = new CSP(200, start, end, constraints);
+            csp.parallelism(parallelism, 4);
+            testSolution(csp.solve(), constraints);
+        }
+
+        // With one thread the clusters are searched one after another, and the
+        // first one answering must not stop the search of the next
+        Set<DateConstraint> triangles = new HashSet<>();
+        for (int i = 0; i < 6; i += 3) {
+            triangles.add(new BinaryDateConstraint(i, "!=", i + 1));
+            triangles.add(new BinaryDateConstraint(i + 1, "!=", i + 2));
+            triangles.add(new BinaryDateConstraint(i + 2, "!=", i));
+        }
+        for (CSP.Parallelism parallelism : CSP.Parallelism.values()) {
+            CSP csp = new CSP(6, start, end, triangles);
+            csp.parallelism(parallelism, 1);
+            testSolution(csp.solve(), triangles);
+            csp = new CSP(200, start, end, constraints);
+            csp.parallelism(parallelism, 1);
+            testSolution(csp.solve(), constraints);
+        }
+
+        // One cluster that cannot be solved leaves no solution at all
+        for (int i = 200; i < 204; i++) {
+            for (int j = i + 1; j < 204; j++) {
+                constraints.add(new BinaryDateConstraint(i, "!=", j));
+            }
+            constraints.add(new UnaryDateConstraint(i, "<", LocalDate.of(2019, 1, 4)));
+        }
+        for (CSP.Parallelism parallelism : CSP.Parallelism.values()) {
+            CSP csp = new CSP(204, start, end, constraints);
+            csp.parallelism(parallelism, 4);
+            assertNull(csp.solve());
+        }
+    }
+
+    @Test
+    public void CSP_t34() {
+        Set<DateConstraint> constraints = new HashSet<>(Arrays.asList(new BinaryDateConstraint(4, "<", 5),
+                new BinaryDateConstraint(5, ">", 3)));
+        Set<CustomConstraint> customs = new HashSet<>(Arrays.asList(
+                new AllDifferentConstraint(0, 1, 2, 3, 4, 5, 6, 7, 8, 9),
+                new DaysApartConstraint(0, 7, 1),
+                new DaysApartConstraint(1, 14, 2),
+                new InDatesConstraint(3, new HashSet<>(Arrays.asList(LocalDate.of(2019, 1, 5),
+                        LocalDate.of(2019, 1, 10), LocalDate.of(2019, 1, 19))))));
+        for (int i = 0; i < 10; i++) {
+            customs.add(DayOfWeekConstraint.weekdays(i));
+        }
+        LocalDate start = LocalDate.of(2019, 1, 1), end = LocalDate.of(2019, 1, 31);
+
+        // Custom constraints check and prune alongside the comparisons, in
+        // every mode of inference, in local search and in a session; of
+        // meeting 3's dates, only 2019-01-10 is not on a weekend
+        for (CSP.Inference inference : CSP.Inference.values()) {
+            CSP csp = new CSP(10, start, end, constraints, customs);
+            csp.inference(inference);
+            List<LocalDate> solution = csp.solve();
+            testSolution(solution, constraints, customs);
+            assertEquals(LocalDate.of(2019, 1, 10), solution.get(3));
+        }
+        MinConflicts search = new MinConflicts(10, start, end, constraints, customs, 5000);
+        search.seed(34);
+        testSolution(search.solve(), constraints, customs);
+        CSPSession session = new CSPSession(10, start, end, constraints, customs);
+        CustomConstraint apart = new DaysApartConstraint(2, 10, 7);
+        testSolution(session.add(apart), session.constraints(), session.customs());
+        assertTrue(apart.toString().contains("10d apart"));
+        testSolution(session.remove(apart), session.constraints(), session.customs());
+        assertEquals(customs, session.customs());
+
+        // 4 all-different meetings over 4 days, each one of 4! orders
+        Set<DateConstraint> none = new HashSet<>();
+        List<CustomConstraint> different = Arrays.asList(new AllDifferentConstraint(0, 1, 2, 3));
+        assertEquals(BigInteger.valueOf(24), new CSP(4, start, start.plusDays(3), none, different).count());
+        assertEquals(24, new CSP(4, start, start.plusDays(3), none, different).stream().count());
+    }
+
+    @Test
+    public void CSP_t35() {
+        LocalDate start = LocalDate.of(2019, 1, 1);
+        DateConstraint early0 = new UnaryDateConstraint(0, "<=", start.plusDays(1)),
+                early1 = new UnaryDateConstraint(1, "<=", start.plusDays(1));
+        Set<DateConstraint> pairwise = new HashSet<>(Arrays.asList(new BinaryDateConstraint(0, "!=", 1),
+                new BinaryDateConstraint(0, "!=", 2), new BinaryDateConstraint(1, "!=", 2), early0, early1));
+        Set<DateConstraint> early = new HashSet<>(Arrays.asList(early0, early1));
+        List<CustomConstraint> global = Arrays.asList(new AllDifferentConstraint(0, 1, 2));
+
+        // Meetings 0 and 1 share the first two days between them, so meeting 2
+        // can only have the third: matching sees this, pairwise != cannot
+        CSP csp = new CSP(3, start, start.plusDays(2), pairwise);
+        assertTrue(csp.propagate());
+        assertEquals(3, csp.domain(2).size());
+        csp = new CSP(3, start, start.plusDays(2), early, global);
+        assertTrue(csp.propagate());
+        assertEquals(1, csp.domain(2).size());
+        assertEquals(2, csp.domain(2).min());
+
+        // 30 meetings can never differ over 29 days, found before any search
+        int[] all = new int[30];
+        for (int i = 0; i < 30; i++) {
+            all[i] = i;
+        }
+        Set<DateConstraint> none = new HashSet<>();
+        List<CustomConstraint> crowded = Arrays.asList(new AllDifferentConstraint(all));
+        assertNull(CSP.solve(30, start, start.plusDays(28), none, crowded));
+        testSolution(CSP.solve(30, start, start.plusDays(29), none, crowded), none, crowded);
+
+        // Meetings 7 or more days apart rule out the week around a fixed one
+        Set<DateConstraint> fixed = new HashSet<>(Arrays.asList(new UnaryDateConstraint(1, "==", start.plusDays(10))));
+        csp = new CSP(2, start, start.plusDays(20), fixed,
+                Collections.<CustomConstraint>singletonList(new DaysApartConstraint(0, 7, 1)));
+        assertTrue(csp.propagate());
+        assertEquals(8, csp.domain(0).size());
+        assertFalse(csp.domain(0).contains(4) || csp.domain(0).contains(16));
+
+        try {
+            new AllDifferentConstraint(3, 3);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new DaysApartConstraint(0, -1, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new InDatesConstraint(-1, new HashSet<LocalDate>());
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void CSP_t36() {
+        Random random = new Random(48);
+        LocalDate start = LocalDate.of(2019, 1, 1), end = LocalDate.of(2019, 1, 6);
+        String[] operators = { "==", "!=", "<", "<=", ">", ">=" };
+        for (int trial = 0; trial < 30; trial++) {
+            Set<DateConstraint> constraints = new HashSet<>();
+            Map<DateConstraint, Long> weights = new HashMap<>();
+            for (int i = 0; i < 4; i++) {
+                int left = random.nextInt(5), right = (left + 1 + random.nextInt(4)) % 5;
+                constraints.add(new BinaryDateConstraint(left, operators[1 + random.nextInt(5)], right));
+                weights.put(new UnaryDateConstraint(random.nextInt(5), operators[random.nextInt(6)],
+                        start.plusDays(random.nextInt(6))), 1L + random.nextInt(9));
+            }
+            Map<CustomConstraint, Long> customWeights = Collections.singletonMap(new DaysApartConstraint(0, 3, 1), 4L);
+            Objective[] objectives = { Objective.finish(), Objective.span(), Objective.penalties(weights),
+                    Objective.span().plus(Objective.penalties(weights)),
+                    Objective.penalties(weights).plus(Objective.customPenalties(customWeights)) };
+
+            // Branch and bound finds a schedule as cheap as the cheapest one
+            // enumerated, under every inference
+            for (Objective objective : objectives) {
+                long cheapest = new CSP(5, start, end, constraints).stream()
+                        .mapToLong(solution -> objective.cost(solution, start)).min().orElse(Long.MAX_VALUE);
+                for (CSP.Inference inference : CSP.Inference.values()) {
+                    CSP csp = new CSP(5, start, end, constraints);
+                    csp.inference(inference);
+                    List<LocalDate> best = csp.minimize(objective, 0);
+                    assertTrue(csp.provedOptimal());
+                    assertEquals(cheapest, csp.bestCost());
+                    if (best == null) {
+                        assertEquals(Long.MAX_VALUE, cheapest);
+                    } else {
+                        testSolution(best, constraints);
+                        assertEquals(cheapest, objective.cost(best, start));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void CSP_t37() {
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 7; i++) {
+            for (int j = i + 1; j < 8; j++) {
+                constraints.add(new BinaryDateConstraint(i, "!=", j));
+            }
+        }
+        LocalDate start = LocalDate.of(2019, 1, 1);
+        Map<DateConstraint, Long> weights = new HashMap<>();
+        weights.put(new UnaryDateConstraint(0, ">", start.plusDays(5)), 10L);
+
+        // Each incumbent is cheaper than the last, and the last is the optimum:
+        // meeting 0 after day 5 and the rest packed into days 0 to 7
+        List<Long> costs = new ArrayList<>();
+        CSP csp = new CSP(8, start, start.plusDays(20), constraints);
+        List<LocalDate> best = csp.minimize(Objective.finish().plus(Objective.penalties(weights)), 0,
+                (solution, cost) -> costs.add(cost));
+        testSolution(best, constraints);
+        assertTrue(csp.provedOptimal());
+        assertEquals(7, csp.bestCost());
+        assertEquals(Long.valueOf(7), costs.get(costs.size() - 1));
+        for (int i = 1; i < costs.size(); i++) {
+            assertTrue(costs.get(i) < costs.get(i - 1));
+        }
+
+        // A budget cut short still leaves the best schedule found so far
+        Random random = new Random(37);
+        Set<DateConstraint> large = new HashSet<>();
+        for (int i = 0; i < 400; i++) {
+            int left = random.nextInt(100), right = (left + 1 + random.nextInt(99)) % 100;
+            large.add(new BinaryDateConstraint(left, "!=", right));
+        }
+        csp = new CSP(100, start, start.plusDays(60), large);
+        best = csp.minimize(Objective.span(), 200);
+        testSolution(best, large);
+        assertEquals(Objective.span().cost(best, start), csp.bestCost());
+    }
+
+    @Test
+    public void CSP_t38() {
+        LocalDate start = LocalDate.of(2019, 1, 1);
+        Set<DateConstraint> constraints = new HashSet<>(Arrays.asList(
+                new BinaryDateConstraint(0, "<", 1),
+                new BinaryDateConstraint(1, "!=", 2),
+                new BinaryDateConstraint(2, "!=", 0),
+                new UnaryDateConstraint(2, "!=", start)));
+
+        // Each propagator's pruning is counted: the unary constraint removes
+        // one date, and the ordering one date from each end of its meetings
+        CSP csp = new CSP(3, start, start.plusDays(3), constraints);
+        csp.collectStats(true);
+        assertTrue(csp.propagate());
+        assertEquals(1, csp.stats().prunings(SolverStats.Propagator.NODE_CONSISTENCY));
+        assertEquals(2, csp.stats().prunings(SolverStats.Propagator.BOUNDS));
+        assertEquals(0, csp.stats().nodes());
+
+        // Counting undoes every assignment it tries, and the listener hears
+        // each one in step with the stats
+        AtomicLong assignments = new AtomicLong(), undone = new AtomicLong();
+        csp = new CSP(3, start, start.plusDays(3), constraints);
+        csp.inference(CSP.Inference.NONE);
+        csp.collectStats(true);
+        csp.listener(new CSP.SearchListener() {
+            @Override
+            public void assigned(int meeting, int day, int depth) {
+                assertEquals(assignments.getAndIncrement() - undone.get(), depth);
+            }
+
+            @Override
+            public void backtracked(int meeting, int day, int depth) {
+                undone.incrementAndGet();
+            }
+        });
+        assertEquals(BigInteger.valueOf(9), csp.count());
+        assertEquals(assignments.get(), csp.stats().nodes());
+        assertEquals(undone.get(), csp.stats().backtracks());
+        assertEquals(csp.stats().nodes(), csp.stats().backtracks());
+        assertEquals(3, csp.stats().maxDepth());
+        assertTrue(csp.stats().checks() > 0);
+
+        // Work done on other threads is counted once the search returns
+        Random random = new Random(49);
+        Set<DateConstraint> large = new HashSet<>();
+        for (int i = 0; i < 120; i++) {
+            int left = random.nextInt(40), right = (left + 1 + random.nextInt(39)) % 40;
+            large.add(new BinaryDateConstraint(left, "!=", right));
+        }
+        AtomicLong heard = new AtomicLong();
+        csp = new CSP(40, start, start.plusDays(5), large);
+        csp.parallelism(CSP.Parallelism.WORK_STEALING, 4);
+        csp.collectStats(true);
+        csp.listener(new CSP.SearchListener() {
+            @Override
+            public void assigned(int meeting, int day, int depth) {
+                heard.incrementAndGet();
+            }
+        });
+        testSolution(csp.solve(), large);
+        assertEquals(heard.get(), csp.stats().nodes());
+        assertTrue(csp.stats().prunings(SolverStats.Propagator.FORWARD_CHECKING) > 0);
+    }
+
+    @Test
+    public void CSP_t39() {
+        LocalDate start = LocalDate.of(2019, 1, 1);
+
+        // The same seed gives the same instance, with the requested number and
+        // mix of constraints, each within the meetings and the horizon
+        Set<DateConstraint> first = new InstanceGenerator(50).generate(200, start, 10, 3.0, 0.25),
+                second = new InstanceGenerator(50).generate(200, start, 10, 3.0, 0.25);
+        assertEquals(first.toString(), second.toString());
+        assertEquals(600, first.size());
+        assertEquals(150, first.stream().filter(d -> d.arity() == 1).count());
+        for (DateConstraint d : first) {
+            assertTrue(d.L_VAL >= 0 && d.L_VAL < 200);
+            if (d.arity() == 1) {
+                LocalDate date = ((UnaryDateConstraint) d).R_VAL;
+                assertFalse(date.isBefore(start) || date.isAfter(start.plusDays(9)));
+            } else {
+                int right = ((BinaryDateConstraint) d).R_VAL;
+                assertTrue(right >= 0 && right < 200 && right != d.L_VAL);
+            }
+        }
+
+        // Sparse instances are solvable, and ones well past the critical
+        // density are not
+        Set<DateConstraint> sparse = new InstanceGenerator(1).generate(50, start, 4, 1.0, 0.2);
+        testSolution(CSP.solve(50, start, start.plusDays(3), sparse), sparse);
+        Set<DateConstraint> dense = new InstanceGenerator(1).generate(50, start, 4,
+                2 * InstanceGenerator.criticalDensity(4), 0.2);
+        assertNull(CSP.solve(50, start, start.plusDays(3), dense));
+    }
+
+    @Test
+    public void CSP_t40() {
+        LocalDate start = LocalDate.of(2019, 1, 1), end = start.plusDays(4);
+        Set<DateConstraint> constraints = new HashSet<>(Arrays.asList(
+                new BinaryDateConstraint(0, "!=", 1),
+                new BinaryDateConstraint(1, "!=", 2),
+                new BinaryDateConstraint(2, "!=", 0),
+                new BinaryDateConstraint(3, "<", 4),
+                new BinaryDateConstraint(4, "!=", 5),
+                new BinaryDateConstraint(5, "!=", 3),
+                new UnaryDateConstraint(6, ">", start)));
+        CSP fresh = new CSP(7, start, end, constraints);
+        BigInteger count = fresh.count();
+
+        // Every entry point gives the same answer after a solve on the same
+        // instance as on a fresh one
+        CSP csp = new CSP(7, start, end, constraints);
+        List<LocalDate> solution = csp.solve();
+        testSolution(solution, constraints);
+        assertEquals(solution, csp.solve());
+        csp.solve();
+        assertEquals(count, csp.count());
+        csp.solve();
+        Iterator<List<LocalDate>> solutions = csp.solutions();
+        long listed = 0;
+        for (; solutions.hasNext(); listed++) {
+            testSolution(solutions.next(), constraints);
+        }
+        assertEquals(count.longValue(), listed);
+        csp.solve();
+        assertEquals(count.longValue(), csp.stream().count());
+        csp.solve();
+        testSolution(csp.minimize(Objective.finish(), 0), constraints);
+        assertEquals(new CSP(7, start, end, constraints).minimize(Objective.finish(), 0), csp.minimize(
+                Objective.finish(), 0));
+        csp.solve();
+        assertTrue(csp.propagate());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(fresh.domain(i).size(), csp.domain(i).size());
+        }
+
+        // An enumeration left part way through does not leak into the next
+        // search either
+        csp.solutions().next();
+        assertEquals(count, csp.count());
+        assertEquals(solution, csp.solve());
+    }
+
+    @Test
+    public void CSP_t41() {
+        Random random = new Random(41);
+        Set<DateConstraint> constraints = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            constraints.add(new BinaryDateConstraint(i, "!=", (i + 1) % 30));
+            constraints.add(new BinaryDateConstraint(i, "!=", (i + 2 + random.nextInt(27)) % 30));
+        }
+        LocalDate start = LocalDate.of(2019, 1, 1), end = start.plusDays(3);
+
+        // A parallel search raises its stop flag once it has an answer, which
+        // must not stop the next search on the same instance
+        for (CSP.Parallelism parallelism : CSP.Parallelism.values()) {
+            CSP csp = new CSP(30, start, end, constraints);
+            csp.parallelism(parallelism, 4);
+            testSolution(csp.solve(), constraints);
+            testSolution(csp.solve(), constraints);
+            csp.parallelism(CSP.Parallelism.SEQUENTIAL, 1);
+            testSolution(csp.solve(), constraints);
+            testSolution(csp.minimize(Objective.finish(), 0), constraints);
+            assertTrue(csp.provedOptimal());
+        }
+    }
+
+    @Test
+    public void CSP_t42() {
+        LocalDate start = LocalDate.of(2019, 1, 1), end = start.plusDays(3);
+
+        // MAC with nogoods, alone and among the restarting entrants of a
+        // portfolio, finds a schedule exactly when one exists
+        for (int seed = 0; seed < 40; seed++) {
+            Set<DateConstraint> constraints = new InstanceGenerator(seed).generate(14, start, 4,
+                    (0.6 + seed % 5 * 0.1) * InstanceGenerator.criticalDensity(4), 0.2);
+            boolean solvable = new CSP(14, start, end, constraints).count().signum() > 0;
+            for (CSP.Parallelism parallelism : CSP.Parallelism.values()) {
+                CSP csp = new CSP(14, start, end, constraints);
+                csp.inference(CSP.Inference.MAC);
+                csp.nogoods(256);
+                csp.parallelism(parallelism, 6);
+                List<LocalDate> solution = csp.solve();
+                if (solvable) {
+                    testSolution(solution, constraints);
+                } else {
+                    assertNull(solution);
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,110 @@
+package csp;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CustomConstraints are those that check and propagate themselves, for
+ * conditions on meeting dates that the comparison operators cannot express, or
+ * can only express as many weakly propagating pairwise constraints. A
+ * constraint's scope is the meetings it constrains; the solver hands it their
+ * domains, in scope order, once before search and again whenever search
+ * assigns one of them, and the constraint prunes the days no solution can use.
+ * They have no comparison operator, so they are passed to the solver alongside
+ * its DateConstraints rather than among them.
+ */
+public abstract class CustomConstraint {
+
+    /** Day passed to check for a meeting that is not yet assigned */
+    static final int UNASSIGNED = -1;
+
+    public final int L_VAL;
+    private final int[] scope;
+
+    /**
+     * @param scope Indexes of the meetings the constraint constrains, the first
+     *              of which is its L_VAL
+     */
+    CustomConstraint(int... scope) {
+        if (scope.length == 0 || scope[0] < 0) {
+            throw new IllegalArgumentException("Invalid variable index");
+        }
+        for (int i = 1; i < scope.length; i++) {
+            for (int j = 0; j < i; j++) {
+                if (scope[i] < 0 || scope[i] == scope[j]) {
+                    throw new IllegalArgumentException("Invalid variable index");
+                }
+            }
+        }
+
+        L_VAL = scope[0];
+        this.scope = scope.clone();
+    }
+
+    /**
+     * @return Indexes of the meetings the constraint constrains
+     */
+    public int[] scope() {
+        return scope.clone();
+    }
+
+    /**
+     * @return The number of meetings the constraint constrains
+     */
+    public int arity() {
+        return scope.length;
+    }
+
+    /**
+     * @param dates A date for every meeting, indexed by meeting
+     * @return Whether the dates satisfy the constraint
+     */
+    public boolean isSatisfiedBy(List<LocalDate> dates) {
+        LocalDate start = dates.get(scope[0]);
+        for (int meeting : scope) {
+            start = dates.get(meeting).isBefore(start) ? dates.get(meeting) : start;
+        }
+        int[] days = new int[scope.length];
+        for (int i = 0; i < scope.length; i++) {
+            days[i] = (int) ChronoUnit.DAYS.between(start, dates.get(scope[i]));
+        }
+        return check(days, start);
+    }
+
+    /**
+     * Checks a complete or partial assignment of the scope.
+     *
+     * @param days       Each meeting's day, in scope order, as an offset from
+     *                   rangeStart, or UNASSIGNED
+     * @param rangeStart The date of day 0
+     * @return false if the assigned meetings already violate the constraint
+     */
+    abstract boolean check(int[] days, LocalDate rangeStart);
+
+    /**
+     * Removes from the scope's domains days that cannot be part of any
+     * assignment satisfying the constraint. Given only singleton domains, it
+     * must return false unless they satisfy the constraint.
+     *
+     * @param domains    Each meeting's domain, in scope order
+     * @param rangeStart The date of day 0
+     * @param trail      Trail to record pruned words on, or null if the
+     *                   pruning is permanent
+     * @return false if no assignment from the domains satisfies the constraint
+     */
+    abstract boolean propagate(Domain[] domains, LocalDate rangeStart, Domain.Trail trail);
+
+    /**
+     * @param scope Indexes of other meetings, in the same order
+     * @return The same constraint over the given meetings
+     */
+    abstract CustomConstraint renumber(int[] scope);
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " " + Arrays.toString(scope);
+    }
+
+}
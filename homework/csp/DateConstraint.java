@@ -1,9 +1,5 @@
 package csp;
 
-import java.util.Arrays;
-import java.util.Set;
-import java.util.HashSet;
-
 /**
  * DateConstraint superclass: all date constraints will have an L_VAL variable
  * and some operation that compares it to some other variable or date value.
@@ -12,13 +8,10 @@ public abstract class DateConstraint {
 
     public final int L_VAL;
     public final String OP;
-
-    private final Set<String> LEGAL_OPS = new HashSet<>(Arrays.asList("==", "!=", "<", "<=", ">", ">="));
+    public final Operator OPERATOR;
 
     DateConstraint(int lVal, String operator) {
-        if (!LEGAL_OPS.contains(operator)) {
-            throw new IllegalArgumentException("Invalid constraint operator");
-        }
+        OPERATOR = Operator.of(operator);
         if (lVal < 0) {
             throw new IllegalArgumentException("Invalid variable index");
         }
@@ -0,0 +1,67 @@
+package csp;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * DayOfWeekConstraints keep a meeting on certain days of the week, such as:
+ * 0 on MONDAY-FRIDAY. Pruning looks up each remaining day's weekday by its
+ * offset from the start of the range, modulo 7.
+ */
+public class DayOfWeekConstraint extends CustomConstraint {
+
+    public final Set<DayOfWeek> DAYS;
+
+    /**
+     * Constructs a new DayOfWeekConstraint.
+     *
+     * @param lVal Meeting variable index that is constrained
+     * @param days The days of the week the meeting may fall on
+     */
+    DayOfWeekConstraint(int lVal, Set<DayOfWeek> days) {
+        super(lVal);
+        DAYS = Collections.unmodifiableSet(days.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(days));
+    }
+
+    /**
+     * @param lVal Meeting variable index that is constrained
+     * @return A constraint keeping the meeting off weekends
+     */
+    static DayOfWeekConstraint weekdays(int lVal) {
+        return new DayOfWeekConstraint(lVal, EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY));
+    }
+
+    @Override
+    boolean check(int[] days, LocalDate rangeStart) {
+        return days[0] == UNASSIGNED || DAYS.contains(rangeStart.plusDays(days[0]).getDayOfWeek());
+    }
+
+    @Override
+    boolean propagate(Domain[] domains, LocalDate rangeStart, Domain.Trail trail) {
+        boolean[] allowed = new boolean[7];
+        for (int i = 0; i < 7; i++) {
+            allowed[i] = DAYS.contains(rangeStart.plusDays(i).getDayOfWeek());
+        }
+        Domain domain = domains[0];
+        for (int day = domain.min(); day >= 0; day = domain.next(day + 1)) {
+            if (!allowed[day % 7]) {
+                domain.remove(day, trail);
+            }
+        }
+        return !domain.isEmpty();
+    }
+
+    @Override
+    DayOfWeekConstraint renumber(int[] scope) {
+        return new DayOfWeekConstraint(scope[0], DAYS);
+    }
+
+    @Override
+    public String toString() {
+        return L_VAL + " on " + DAYS;
+    }
+
+}
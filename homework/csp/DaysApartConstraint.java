@@ -0,0 +1,65 @@
+package csp;
+
+import java.time.LocalDate;
+
+/**
+ * DaysApartConstraints keep two meetings at least some number of days apart,
+ * in either order, such as: 0 and 1 at least 7 days apart. Days near the other
+ * meeting's range that every one of its dates is too close to are pruned as a
+ * single interval.
+ */
+public class DaysApartConstraint extends CustomConstraint {
+
+    public final int R_VAL, DAYS;
+
+    /**
+     * Constructs a new DaysApartConstraint.
+     *
+     * @param lVal Index of the first meeting
+     * @param days Fewest days there must be between the two meetings' dates
+     * @param rVal Index of the second meeting
+     */
+    DaysApartConstraint(int lVal, int days, int rVal) {
+        super(lVal, rVal);
+        if (days < 0) {
+            throw new IllegalArgumentException("Invalid number of days");
+        }
+
+        R_VAL = rVal;
+        DAYS = days;
+    }
+
+    @Override
+    boolean check(int[] days, LocalDate rangeStart) {
+        return days[0] == UNASSIGNED || days[1] == UNASSIGNED || Math.abs(days[0] - days[1]) >= DAYS;
+    }
+
+    @Override
+    boolean propagate(Domain[] domains, LocalDate rangeStart, Domain.Trail trail) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < 2; i++) {
+                Domain domain = domains[i], other = domains[1 - i];
+                if (other.isEmpty()) {
+                    return false;
+                }
+                // A day d is supported if the other meeting can be DAYS before
+                // or after it, i.e. unless other.max - DAYS < d < other.min + DAYS
+                changed |= domain.removeBetween(other.max() - DAYS + 1, other.min() + DAYS - 1, trail);
+            }
+        }
+        return !domains[0].isEmpty() && !domains[1].isEmpty();
+    }
+
+    @Override
+    DaysApartConstraint renumber(int[] scope) {
+        return new DaysApartConstraint(scope[0], DAYS, scope[1]);
+    }
+
+    @Override
+    public String toString() {
+        return L_VAL + " " + DAYS + "d apart " + R_VAL;
+    }
+
+}
@@ -0,0 +1,291 @@
+package csp;
+
+import java.util.Arrays;
+
+/**
+ * The dates still available to one meeting, stored as a bitset of day offsets
+ * from the start of the scheduling range: bit d is set if the date rangeStart +
+ * d days is in the domain. Restricting a domain by an ordering operator clears
+ * whole words at a time, and its size is kept as a running popcount.
+ *
+ * Every mutator can record the words it overwrites on a Trail, so that search
+ * can undo its pruning by restoring them rather than copying domains.
+ */
+class Domain {
+
+    private final long[] words;
+    private final int days;
+    private int size;
+
+    /**
+     * Constructs a full Domain holding every day offset in [0, days).
+     *
+     * @param days Length of the scheduling range, in days
+     */
+    Domain(int days) {
+        this.days = days;
+        this.words = new long[(days + 63) >>> 6];
+        if (days > 0) {
+            Arrays.fill(words, -1L);
+            words[words.length - 1] = -1L >>> (-days & 63);
+        }
+        this.size = days;
+    }
+
+    /**
+     * Constructs a copy of the given Domain.
+     */
+    Domain(Domain other) {
+        this.days = other.days;
+        this.words = other.words.clone();
+        this.size = other.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The length of the scheduling range the domain is drawn from
+     */
+    int days() {
+        return days;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(long day) {
+        return day >= 0 && day < days && (words[(int) (day >>> 6)] & (1L << day)) != 0;
+    }
+
+    /**
+     * @return The earliest day in the domain, or -1 if it is empty
+     */
+    int min() {
+        return next(0);
+    }
+
+    /**
+     * @return The latest day in the domain, or -1 if it is empty
+     */
+    int max() {
+        for (int w = words.length - 1; w >= 0; w--) {
+            if (words[w] != 0) {
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(words[w]);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param from Day to start looking from
+     * @return The earliest day in the domain at or after from, or -1 if none
+     */
+    int next(int from) {
+        if (from >= days) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * @return The number of days in the domain before the given day
+     */
+    int countBelow(long day) {
+        if (day <= 0) {
+            return 0;
+        }
+        if (day >= days) {
+            return size;
+        }
+        int w = (int) (day >>> 6), count = Long.bitCount(words[w] & ((1L << day) - 1));
+        for (int i = 0; i < w; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @return The days in the domain, in ascending order
+     */
+    int[] toArray() {
+        int[] values = new int[size];
+        for (int day = next(0), i = 0; day >= 0; day = next(day + 1)) {
+            values[i++] = day;
+        }
+        return values;
+    }
+
+    /**
+     * Keeps only the days d for which "d operator value" holds.
+     *
+     * @param operator Comparison every remaining day must satisfy
+     * @param value    Right operand of the comparison, as a day offset; may lie
+     *                 outside the scheduling range
+     * @param trail    Trail to record overwritten words on, or null
+     * @return true if the domain shrank
+     */
+    boolean restrict(Operator operator, long value, Trail trail) {
+        switch (operator) {
+        case EQ:
+            return keepBetween(value, value, trail);
+        case NE:
+            return remove(value, trail);
+        case LT:
+            return keepBetween(0, value - 1, trail);
+        case LE:
+            return keepBetween(0, value, trail);
+        case GT:
+            return keepBetween(value + 1, days - 1, trail);
+        default:
+            return keepBetween(value, days - 1, trail);
+        }
+    }
+
+    /**
+     * Keeps only the days in [from, to], clearing whole words outside it.
+     *
+     * @return true if the domain shrank
+     */
+    boolean keepBetween(long from, long to, Trail trail) {
+        from = Math.max(from, 0);
+        to = Math.min(to, days - 1);
+        boolean changed = false;
+        for (int w = 0; w < words.length; w++) {
+            long lo = (long) w << 6, mask;
+            if (to < lo || from > lo + 63) {
+                mask = 0;
+            } else {
+                mask = -1L;
+                if (from > lo) {
+                    mask &= -1L << (from - lo);
+                }
+                if (to < lo + 63) {
+                    mask &= -1L >>> (63 - (to - lo));
+                }
+            }
+            changed |= set(w, words[w] & mask, trail);
+        }
+        return changed;
+    }
+
+    /**
+     * Removes the days in [from, to].
+     *
+     * @return true if the domain shrank
+     */
+    boolean removeBetween(long from, long to, Trail trail) {
+        from = Math.max(from, 0);
+        to = Math.min(to, days - 1);
+        boolean changed = false;
+        for (long w = from >>> 6; from <= to && w <= to >>> 6; w++) {
+            long lo = w << 6, mask = -1L;
+            if (from > lo) {
+                mask &= -1L << (from - lo);
+            }
+            if (to < lo + 63) {
+                mask &= -1L >>> (63 - (to - lo));
+            }
+            changed |= set((int) w, words[(int) w] & ~mask, trail);
+        }
+        return changed;
+    }
+
+    /**
+     * Removes a single day.
+     *
+     * @return true if the day was in the domain
+     */
+    boolean remove(long day, Trail trail) {
+        if (!contains(day)) {
+            return false;
+        }
+        int w = (int) (day >>> 6);
+        return set(w, words[w] & ~(1L << day), trail);
+    }
+
+    /**
+     * Keeps only the days also in the other domain.
+     *
+     * @return true if the domain shrank
+     */
+    boolean retainAll(Domain other, Trail trail) {
+        boolean changed = false;
+        for (int w = 0; w < words.length; w++) {
+            changed |= set(w, words[w] & other.words[w], trail);
+        }
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /** Helper Methods */
+
+    private boolean set(int w, long word, Trail trail) {
+        long old = words[w];
+        if (old == word) {
+            return false;
+        }
+        if (trail != null) {
+            trail.record(this, w, old);
+        }
+        words[w] = word;
+        size += Long.bitCount(word) - Long.bitCount(old);
+        return true;
+    }
+
+    /**
+     * Undo stack of overwritten domain words. Undoing back to a mark restores,
+     * newest first, every word overwritten since the mark was taken.
+     */
+    static class Trail {
+
+        private Domain[] domains = new Domain[64];
+        private int[] indexes = new int[64];
+        private long[] olds = new long[64];
+        private int size;
+
+        /**
+         * @return A mark to later undo back to
+         */
+        int mark() {
+            return size;
+        }
+
+        void undo(int mark) {
+            while (size > mark) {
+                size--;
+                Domain domain = domains[size];
+                domains[size] = null;
+                domain.set(indexes[size], olds[size], null);
+            }
+        }
+
+        private void record(Domain domain, int index, long old) {
+            if (size == domains.length) {
+                domains = Arrays.copyOf(domains, size * 2);
+                indexes = Arrays.copyOf(indexes, size * 2);
+                olds = Arrays.copyOf(olds, size * 2);
+            }
+            domains[size] = domain;
+            indexes[size] = index;
+            olds[size] = old;
+            size++;
+        }
+
+    }
+
+}
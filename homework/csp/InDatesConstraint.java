@@ -0,0 +1,54 @@
+package csp;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * InDatesConstraints keep a meeting on one of a given set of dates, such as:
+ * 0 in [2019-01-03, 2019-01-10], in place of a disjunction the comparison
+ * operators cannot express.
+ */
+public class InDatesConstraint extends CustomConstraint {
+
+    public final Set<LocalDate> DATES;
+
+    /**
+     * Constructs a new InDatesConstraint.
+     *
+     * @param lVal  Meeting variable index that is constrained
+     * @param dates The dates the meeting may fall on
+     */
+    InDatesConstraint(int lVal, Set<LocalDate> dates) {
+        super(lVal);
+        DATES = Collections.unmodifiableSet(new HashSet<>(dates));
+    }
+
+    @Override
+    boolean check(int[] days, LocalDate rangeStart) {
+        return days[0] == UNASSIGNED || DATES.contains(rangeStart.plusDays(days[0]));
+    }
+
+    @Override
+    boolean propagate(Domain[] domains, LocalDate rangeStart, Domain.Trail trail) {
+        Domain domain = domains[0];
+        for (int day = domain.min(); day >= 0; day = domain.next(day + 1)) {
+            if (!DATES.contains(rangeStart.plusDays(day))) {
+                domain.remove(day, trail);
+            }
+        }
+        return !domain.isEmpty();
+    }
+
+    @Override
+    InDatesConstraint renumber(int[] scope) {
+        return new InDatesConstraint(scope[0], DATES);
+    }
+
+    @Override
+    public String toString() {
+        return L_VAL + " in " + DATES;
+    }
+
+}
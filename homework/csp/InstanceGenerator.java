@@ -0,0 +1,81 @@
+package csp;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates random scheduling instances from a seed, so that a benchmark run
+ * can be repeated exactly. Binary constraints are mostly != between random
+ * pairs of meetings, which makes an instance a graph coloring problem with one
+ * color per day of the horizon; the rest are <= from the lower-indexed meeting
+ * to the higher, which never form a cycle. Unary constraints rule out a date
+ * or cut a meeting's window from one side.
+ */
+public class InstanceGenerator {
+
+    /** Share of binary constraints that are orderings rather than != */
+    private static final double ORDERING_SHARE = 0.1;
+
+    private final Random random;
+
+    /**
+     * Constructs a new InstanceGenerator.
+     *
+     * @param seed Seed for every instance this generator makes
+     */
+    public InstanceGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param horizon Length of the scheduling range, in days
+     * @return The number of constraints per meeting near which random instances
+     *         turn from mostly solvable to mostly unsolvable and are hardest to
+     *         decide: half the average degree, k ln k for k colors, at which
+     *         random graphs stop being k-colorable. The estimate is asymptotic
+     *         and runs high for short horizons.
+     */
+    public static double criticalDensity(int horizon) {
+        return horizon * Math.log(horizon);
+    }
+
+    /**
+     * @param nMeetings  The number of meetings, at least 2
+     * @param rangeStart The start of the scheduling range
+     * @param horizon    Length of the scheduling range, in days
+     * @param density    Constraints per meeting, unary and binary together
+     * @param unaryShare Share of the constraints that are unary
+     * @return A new set of constraints over the meetings; the same pair of
+     *         meetings may be constrained more than once
+     */
+    public Set<DateConstraint> generate(int nMeetings, LocalDate rangeStart, int horizon, double density,
+            double unaryShare) {
+        Set<DateConstraint> constraints = new LinkedHashSet<>();
+        long total = Math.round(nMeetings * density), unary = Math.round(total * unaryShare);
+        for (long i = 0; i < unary; i++) {
+            int meeting = random.nextInt(nMeetings);
+            double kind = random.nextDouble();
+            if (kind < 0.5) {
+                constraints.add(new UnaryDateConstraint(meeting, "!=", rangeStart.plusDays(random.nextInt(horizon))));
+            } else if (kind < 0.75) {
+                constraints.add(new UnaryDateConstraint(meeting, ">=",
+                        rangeStart.plusDays(random.nextInt(Math.max(1, horizon / 3)))));
+            } else {
+                constraints.add(new UnaryDateConstraint(meeting, "<=",
+                        rangeStart.plusDays(horizon - 1 - random.nextInt(Math.max(1, horizon / 3)))));
+            }
+        }
+        for (long i = unary; i < total; i++) {
+            int left = random.nextInt(nMeetings), right = (left + 1 + random.nextInt(nMeetings - 1)) % nMeetings;
+            if (random.nextDouble() < ORDERING_SHARE) {
+                constraints.add(new BinaryDateConstraint(Math.min(left, right), "<=", Math.max(left, right)));
+            } else {
+                constraints.add(new BinaryDateConstraint(left, "!=", right));
+            }
+        }
+        return constraints;
+    }
+
+}
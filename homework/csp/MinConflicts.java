@@ -0,0 +1,499 @@
+package csp;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Min-conflicts local search for scheduling instances too large for
+ * backtracking. Every meeting is given a date from its domain after node
+ * consistency, bounds propagation and arc consistency, greedily at first, and
+ * then a meeting with a violated constraint is moved, one step at a time, to
+ * the date that violates the fewest of its constraints. A meeting may not move
+ * back to the date it just left for a few steps (tabu), unless doing so beats
+ * the best assignment seen, and a search that stops improving restarts from a
+ * fresh randomized greedy assignment.
+ *
+ * The number of violated constraints on each meeting is kept up to date as
+ * meetings move, so a step costs time in the moved meeting's degree and the
+ * length of the scheduling range, never in the total number of constraints.
+ * Custom constraints on several meetings are instead checked against each of
+ * the moved meeting's dates, at a cost in the size of their scopes.
+ * Local search cannot prove that no solution exists; it runs until it finds
+ * one or its time budget runs out, and keeps the best assignment it has seen.
+ */
+public class MinConflicts {
+
+    /** Receives periodic reports from a running search */
+    public interface Progress {
+        /**
+         * @param steps          Steps taken so far
+         * @param restarts       Random restarts so far
+         * @param violations     Constraints the current assignment violates
+         * @param bestViolations Fewest constraints any assignment so far violated
+         */
+        void report(long steps, int restarts, int violations, int bestViolations);
+    }
+
+    private static final int CHECK_INTERVAL = 1 << 8, UNASSIGNED = -1;
+
+    private final LocalDate rangeStart;
+    private final int days;
+    private final long budgetNanos;
+    private final boolean consistent;
+    private final Domain[] domains;
+    // Each meeting's binary constraints, as the other meeting and the
+    // operator read with this meeting on its left
+    private final int[][] neighbors;
+    private final Operator[][] operators;
+    // Custom constraints on more than one meeting, the ones on each meeting,
+    // and whether each is violated
+    private final List<CustomConstraint> customs;
+    private final int[][] customsOn;
+    private final boolean[] customViolated;
+    private final int[] assignment, conflicts, cost;
+    // Meetings with at least one violated constraint, and each meeting's
+    // position in that list, or -1
+    private final int[] conflicted, position;
+    private final int[] tabuDay;
+    private final long[] tabuUntil;
+    private int nConflicted, violations, bestViolations;
+    private int[] best;
+    private int tabuTenure, restarts;
+    private long restartSteps, steps, progressInterval;
+    private Random random;
+    private Progress progress;
+
+    /**
+     * Constructs a new MinConflicts search, pruning every meeting's domain
+     * before it starts.
+     *
+     * @param nMeetings    The number of meetings that must be scheduled
+     * @param rangeStart   The start date (inclusive) of every meeting's domain
+     * @param rangeEnd     The end date (inclusive) of every meeting's domain
+     * @param constraints  Date constraints on the meeting times
+     * @param budgetMillis Milliseconds each call to solve may take before it
+     *                     gives up, or 0 for no limit
+     */
+    public MinConflicts(int nMeetings, LocalDate rangeStart, LocalDate rangeEnd, Set<DateConstraint> constraints,
+            long budgetMillis) {
+        this(nMeetings, rangeStart, rangeEnd, constraints, Collections.<CustomConstraint>emptyList(), budgetMillis);
+    }
+
+    /**
+     * Constructs a new MinConflicts search whose meetings are also held to
+     * custom constraints.
+     *
+     * @param customs Custom constraints on the meeting times
+     * @see #MinConflicts(int, LocalDate, LocalDate, Set, long)
+     */
+    public MinConflicts(int nMeetings, LocalDate rangeStart, LocalDate rangeEnd, Set<DateConstraint> constraints,
+            Collection<CustomConstraint> customs, long budgetMillis) {
+        this.rangeStart = rangeStart;
+        this.days = (int) Math.max(0, ChronoUnit.DAYS.between(rangeStart, rangeEnd) + 1);
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        CSP csp = new CSP(nMeetings, rangeStart, rangeEnd, constraints, customs);
+        this.consistent = csp.propagate();
+        this.domains = new Domain[nMeetings];
+        for (int i = 0; i < nMeetings; i++) {
+            domains[i] = csp.domain(i);
+        }
+        this.neighbors = new int[nMeetings][];
+        this.operators = new Operator[nMeetings][];
+        indexNeighbors(constraints);
+        this.customs = new ArrayList<>();
+        this.customsOn = new int[nMeetings][];
+        indexCustoms(customs);
+        this.customViolated = new boolean[customs.size()];
+        this.assignment = new int[nMeetings];
+        this.conflicts = new int[nMeetings];
+        this.cost = new int[days + 1];
+        this.conflicted = new int[nMeetings];
+        this.position = new int[nMeetings];
+        this.tabuDay = new int[nMeetings];
+        this.tabuUntil = new long[nMeetings];
+        this.tabuTenure = 10;
+        this.restartSteps = 1 << 14;
+        this.progressInterval = Long.MAX_VALUE;
+        this.random = new Random();
+    }
+
+    /**
+     * @param steps Number of steps after a meeting leaves a date before it may
+     *              return to it
+     */
+    public void tabuTenure(int steps) {
+        this.tabuTenure = steps;
+    }
+
+    /**
+     * @param steps Number of steps without improving on the best assignment of
+     *              the current run after which the search restarts
+     */
+    public void restartSteps(long steps) {
+        this.restartSteps = steps;
+    }
+
+    /**
+     * @param seed Seed for the random choices of the search, so that runs can be
+     *             repeated
+     */
+    public void seed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param listener Receives a report every interval steps, or null for none
+     * @param interval Number of steps between reports, at least 1
+     */
+    public void progress(Progress listener, long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid progress interval");
+        }
+
+        this.progress = listener;
+        this.progressInterval = interval;
+    }
+
+    /**
+     * Searches until every constraint is satisfied or the time budget runs out.
+     *
+     * @return A list of dates that satisfies each of the constraints, indexed by
+     *         meeting, or null if none was found, whether because none exists or
+     *         because the budget ran out first
+     */
+    public List<LocalDate> solve() {
+        long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+        steps = 0;
+        restarts = 0;
+        best = null;
+        bestViolations = Integer.MAX_VALUE;
+        if (!consistent) {
+            return null;
+        }
+        restart();
+        int runBest = violations;
+        long sinceImproved = 0;
+        while (violations > 0) {
+            if (steps % CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                break;
+            }
+            if (progress != null && steps % progressInterval == 0) {
+                progress.report(steps, restarts, violations, bestViolations);
+            }
+            step();
+            steps++;
+            if (violations < bestViolations) {
+                keepBest();
+            }
+            if (violations < runBest) {
+                runBest = violations;
+                sinceImproved = 0;
+            } else if (++sinceImproved >= restartSteps) {
+                restarts++;
+                restart();
+                runBest = violations;
+                sinceImproved = 0;
+            }
+        }
+        return violations == 0 ? gatherAssignment(assignment) : null;
+    }
+
+    /**
+     * @return The assignment of the last solve that violated the fewest
+     *         constraints, indexed by meeting, or null if propagation alone
+     *         proved that no solution exists
+     */
+    public List<LocalDate> best() {
+        return best == null ? null : gatherAssignment(best);
+    }
+
+    /**
+     * @return The number of constraints the best assignment violates
+     */
+    public int bestViolations() {
+        return bestViolations;
+    }
+
+    /**
+     * @return The number of steps the last solve took
+     */
+    public long steps() {
+        return steps;
+    }
+
+    /**
+     * @return The number of times the last solve restarted
+     */
+    public int restarts() {
+        return restarts;
+    }
+
+    /** Helper Methods */
+
+    private void indexNeighbors(Set<DateConstraint> constraints) {
+        int[] degree = new int[neighbors.length];
+        for (DateConstraint constraint : constraints) {
+            if (constraint.arity() == 2) {
+                degree[constraint.L_VAL]++;
+                degree[((BinaryDateConstraint) constraint).R_VAL]++;
+            }
+        }
+        for (int i = 0; i < neighbors.length; i++) {
+            neighbors[i] = new int[degree[i]];
+            operators[i] = new Operator[degree[i]];
+            degree[i] = 0;
+        }
+        for (DateConstraint constraint : constraints) {
+            if (constraint.arity() == 2) {
+                int left = constraint.L_VAL, right = ((BinaryDateConstraint) constraint).R_VAL;
+                neighbors[left][degree[left]] = right;
+                operators[left][degree[left]++] = constraint.OPERATOR;
+                neighbors[right][degree[right]] = left;
+                operators[right][degree[right]++] = constraint.OPERATOR.converse();
+            }
+        }
+    }
+
+    // Unary custom constraints are settled by propagation, like unary
+    // comparisons, so only the others are counted during search
+    private void indexCustoms(Collection<CustomConstraint> all) {
+        int[] degree = new int[customsOn.length];
+        for (CustomConstraint custom : all) {
+            if (custom.arity() > 1) {
+                customs.add(custom);
+                for (int meeting : custom.scope()) {
+                    degree[meeting]++;
+                }
+            }
+        }
+        for (int i = 0; i < customsOn.length; i++) {
+            customsOn[i] = new int[degree[i]];
+            degree[i] = 0;
+        }
+        for (int id = 0; id < customs.size(); id++) {
+            for (int meeting : customs.get(id).scope()) {
+                customsOn[meeting][degree[meeting]++] = id;
+            }
+        }
+    }
+
+    /**
+     * Assigns the meetings greedily, fewest remaining dates first, each to a
+     * date violating the fewest constraints with the meetings already assigned,
+     * breaking ties at random, then counts the violations from scratch.
+     */
+    private void restart() {
+        Arrays.fill(assignment, UNASSIGNED);
+        Arrays.fill(tabuUntil, 0);
+        Integer[] order = new Integer[assignment.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> domains[i].size()));
+        for (int meeting : order) {
+            countCosts(meeting);
+            assignment[meeting] = cheapest(meeting, UNASSIGNED, false);
+        }
+        Arrays.fill(conflicts, 0);
+        Arrays.fill(position, -1);
+        nConflicted = 0;
+        int ends = 0;
+        for (int meeting = 0; meeting < assignment.length; meeting++) {
+            for (int k = 0; k < neighbors[meeting].length; k++) {
+                if (!operators[meeting][k].test(assignment[meeting], assignment[neighbors[meeting][k]])) {
+                    conflicts[meeting]++;
+                }
+            }
+            ends += conflicts[meeting];
+        }
+        violations = ends / 2;
+        for (int id = 0; id < customs.size(); id++) {
+            customViolated[id] = violates(id);
+            if (customViolated[id]) {
+                violations++;
+                for (int meeting : customs.get(id).scope()) {
+                    conflicts[meeting]++;
+                }
+            }
+        }
+        for (int meeting = 0; meeting < assignment.length; meeting++) {
+            updateConflicted(meeting);
+        }
+        if (violations < bestViolations) {
+            keepBest();
+        }
+    }
+
+    /**
+     * Moves a random conflicted meeting to its cheapest date other than its
+     * current one.
+     */
+    private void step() {
+        int meeting = conflicted[random.nextInt(nConflicted)];
+        countCosts(meeting);
+        int from = assignment[meeting], to = cheapest(meeting, from, true);
+        if (to == UNASSIGNED) {
+            return;
+        }
+        for (int k = 0; k < neighbors[meeting].length; k++) {
+            int neighbor = neighbors[meeting][k], day = assignment[neighbor];
+            Operator operator = operators[meeting][k];
+            int delta = (operator.test(to, day) ? 0 : 1) - (operator.test(from, day) ? 0 : 1);
+            if (delta != 0) {
+                conflicts[meeting] += delta;
+                conflicts[neighbor] += delta;
+                violations += delta;
+                updateConflicted(neighbor);
+            }
+        }
+        assignment[meeting] = to;
+        for (int id : customsOn[meeting]) {
+            boolean violated = violates(id);
+            if (violated != customViolated[id]) {
+                int delta = violated ? 1 : -1;
+                customViolated[id] = violated;
+                violations += delta;
+                for (int member : customs.get(id).scope()) {
+                    conflicts[member] += delta;
+                    updateConflicted(member);
+                }
+            }
+        }
+        updateConflicted(meeting);
+        tabuDay[meeting] = from;
+        tabuUntil[meeting] = steps + tabuTenure;
+    }
+
+    /**
+     * Fills cost[d] with the number of the meeting's constraints, with
+     * assigned meetings, that day d would violate. The days each constraint
+     * rules out form at most a range and a single day, so they are added to
+     * a difference array and summed in one pass.
+     */
+    private void countCosts(int meeting) {
+        Arrays.fill(cost, 0);
+        for (int k = 0; k < neighbors[meeting].length; k++) {
+            int day = assignment[neighbors[meeting][k]];
+            if (day == UNASSIGNED) {
+                continue;
+            }
+            switch (operators[meeting][k]) {
+            case EQ:
+                addCost(0, days - 1, 1);
+                addCost(day, day, -1);
+                break;
+            case NE:
+                addCost(day, day, 1);
+                break;
+            case LT:
+                addCost(day, days - 1, 1);
+                break;
+            case LE:
+                addCost(day + 1, days - 1, 1);
+                break;
+            case GT:
+                addCost(0, day, 1);
+                break;
+            default:
+                addCost(0, day - 1, 1);
+            }
+        }
+        for (int d = 1; d < days; d++) {
+            cost[d] += cost[d - 1];
+        }
+        // Custom constraints are checked date by date instead
+        if (customsOn[meeting].length > 0) {
+            int current = assignment[meeting];
+            Domain domain = domains[meeting];
+            for (int day = domain.min(); day >= 0; day = domain.next(day + 1)) {
+                assignment[meeting] = day;
+                for (int id : customsOn[meeting]) {
+                    cost[day] += violates(id) ? 1 : 0;
+                }
+            }
+            assignment[meeting] = current;
+        }
+    }
+
+    private void addCost(int from, int to, int delta) {
+        if (from <= to) {
+            cost[from] += delta;
+            cost[to + 1] -= delta;
+        }
+    }
+
+    /**
+     * @param meeting The meeting to place, whose costs have been counted
+     * @param current Its current date, never chosen, or UNASSIGNED
+     * @param tabu    Whether to skip the date it recently left, unless taking
+     *                it would beat the best assignment seen
+     * @return The cheapest date in the meeting's domain, ties broken at random,
+     *         or UNASSIGNED if there is none to choose
+     */
+    private int cheapest(int meeting, int current, boolean tabu) {
+        int choice = UNASSIGNED, lowest = Integer.MAX_VALUE, ties = 0;
+        int base = current == UNASSIGNED ? 0 : violations - cost[current];
+        Domain domain = domains[meeting];
+        for (int day = domain.min(); day >= 0; day = domain.next(day + 1)) {
+            if (day == current) {
+                continue;
+            }
+            if (tabu && tabuDay[meeting] == day && tabuUntil[meeting] > steps
+                    && base + cost[day] >= bestViolations) {
+                continue;
+            }
+            if (cost[day] < lowest) {
+                choice = day;
+                lowest = cost[day];
+                ties = 1;
+            } else if (cost[day] == lowest && random.nextInt(++ties) == 0) {
+                choice = day;
+            }
+        }
+        return choice;
+    }
+
+    // Whether the custom constraint's assigned meetings violate it
+    private boolean violates(int id) {
+        CustomConstraint custom = customs.get(id);
+        int[] scope = custom.scope(), days = new int[scope.length];
+        for (int i = 0; i < scope.length; i++) {
+            days[i] = assignment[scope[i]];
+        }
+        return !custom.check(days, rangeStart);
+    }
+
+    private void updateConflicted(int meeting) {
+        if (conflicts[meeting] > 0 && position[meeting] < 0) {
+            position[meeting] = nConflicted;
+            conflicted[nConflicted++] = meeting;
+        } else if (conflicts[meeting] == 0 && position[meeting] >= 0) {
+            int last = conflicted[--nConflicted];
+            conflicted[position[meeting]] = last;
+            position[last] = position[meeting];
+            position[meeting] = -1;
+        }
+    }
+
+    private void keepBest() {
+        bestViolations = violations;
+        best = assignment.clone();
+    }
+
+    private List<LocalDate> gatherAssignment(int[] days) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (int day : days) {
+            dates.add(rangeStart.plusDays(day));
+        }
+        return dates;
+    }
+
+}
@@ -0,0 +1,102 @@
+package csp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Bounded store of nogoods: partial assignments that search has proven cannot
+ * be extended to a solution. Each nogood is a set of (meeting, day) pairs,
+ * indexed under every one of its pairs, so that assigning a meeting only has
+ * to look at the nogoods mentioning that meeting on that day. Once the store
+ * holds its capacity it is emptied and starts filling again, keeping its
+ * memory bounded and its nogoods recent.
+ */
+class NogoodStore {
+
+    private final int capacity, maxLength;
+    private final Map<Long, List<int[]>> byPair;
+    private int size;
+
+    /**
+     * Constructs an empty NogoodStore.
+     *
+     * @param capacity  Most nogoods held at once
+     * @param maxLength Most pairs in a nogood worth recording; longer ones are
+     *                  too specific to be met again
+     */
+    NogoodStore(int capacity, int maxLength) {
+        this.capacity = capacity;
+        this.maxLength = maxLength;
+        this.byPair = new HashMap<>();
+    }
+
+    /**
+     * Records a nogood, unless it is empty or longer than the store's limit.
+     *
+     * @param meetings The meetings of the nogood's pairs
+     * @param days     The day each of those meetings was assigned
+     * @param length   Number of pairs to read from the two arrays
+     */
+    void record(int[] meetings, int[] days, int length) {
+        if (length == 0 || length > maxLength) {
+            return;
+        }
+        if (size == capacity) {
+            byPair.clear();
+            size = 0;
+        }
+        int[] nogood = new int[2 * length];
+        for (int i = 0; i < length; i++) {
+            nogood[2 * i] = meetings[i];
+            nogood[2 * i + 1] = days[i];
+        }
+        for (int i = 0; i < length; i++) {
+            byPair.computeIfAbsent(key(meetings[i], days[i]), k -> new ArrayList<>()).add(nogood);
+        }
+        size++;
+    }
+
+    /**
+     * Finds a nogood made true by assigning the given meeting the given day.
+     *
+     * @param meeting    The meeting just assigned
+     * @param day        The day it was assigned
+     * @param assignment The day each meeting is assigned, or a negative number
+     *                   if it is unassigned
+     * @return The nogood as alternating meetings and days, or null if none
+     *         holds
+     */
+    int[] violated(int meeting, int day, IntUnaryOperator assignment) {
+        List<int[]> candidates = byPair.get(key(meeting, day));
+        if (candidates == null) {
+            return null;
+        }
+        for (int[] nogood : candidates) {
+            boolean holds = true;
+            for (int i = 0; i < nogood.length && holds; i += 2) {
+                holds = assignment.applyAsInt(nogood[i]) == nogood[i + 1];
+            }
+            if (holds) {
+                return nogood;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of nogoods held
+     */
+    int size() {
+        return size;
+    }
+
+    /** Helper Methods */
+
+    private static long key(int meeting, int day) {
+        return ((long) meeting << 32) | (day & 0xFFFFFFFFL);
+    }
+
+}
@@ -0,0 +1,270 @@
+package csp;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cost to minimize over the schedules that satisfy a CSP's constraints,
+ * such as the day the last meeting ends or the weight of the soft preferences a
+ * schedule breaks. Branch and bound asks an objective for a lower bound on the
+ * cost of every schedule still reachable from the current domains, and prunes
+ * the subtree once that bound reaches the cost of the best schedule found.
+ */
+public abstract class Objective {
+
+    /** Day passed for a meeting that is not yet assigned */
+    static final int UNASSIGNED = -1;
+
+    /**
+     * @param days       Each meeting's assigned day, as an offset from
+     *                   rangeStart, or UNASSIGNED
+     * @param domains    Each meeting's domain
+     * @param rangeStart The date of day 0
+     * @return A lower bound on the cost of any schedule that keeps the assigned
+     *         days and takes the others from their domains; exactly the cost
+     *         once every meeting is assigned
+     */
+    abstract long lowerBound(int[] days, Domain[] domains, LocalDate rangeStart);
+
+    /**
+     * Removes from the unassigned meetings' domains days that cannot be part of
+     * a schedule costing less than the given bound. Keeps every day by default.
+     *
+     * @param bound      Cost every schedule must now beat
+     * @param rangeStart The date of day 0
+     * @param trail      Trail to record pruned words on
+     * @return false if some domain was emptied
+     */
+    boolean tighten(int[] days, Domain[] domains, long bound, LocalDate rangeStart, Domain.Trail trail) {
+        return true;
+    }
+
+    /**
+     * @param dates      A date for every meeting, indexed by meeting
+     * @param rangeStart The start of the scheduling range
+     * @return The cost of the given schedule
+     */
+    public long cost(List<LocalDate> dates, LocalDate rangeStart) {
+        int[] days = new int[dates.size()];
+        int last = 0;
+        for (int i = 0; i < days.length; i++) {
+            days[i] = (int) ChronoUnit.DAYS.between(rangeStart, dates.get(i));
+            last = Math.max(last, days[i]);
+        }
+        Domain[] domains = new Domain[days.length];
+        for (int i = 0; i < days.length; i++) {
+            domains[i] = new Domain(last + 1);
+            domains[i].keepBetween(days[i], days[i], null);
+        }
+        return lowerBound(days, domains, rangeStart);
+    }
+
+    /**
+     * @param other Another objective
+     * @return The objective costing the sum of this one and the other
+     */
+    public Objective plus(Objective other) {
+        Objective self = this;
+        return new Objective() {
+            @Override
+            long lowerBound(int[] days, Domain[] domains, LocalDate rangeStart) {
+                return self.lowerBound(days, domains, rangeStart) + other.lowerBound(days, domains, rangeStart);
+            }
+
+            // Each part must cost less than the bound less the other's least
+            @Override
+            boolean tighten(int[] days, Domain[] domains, long bound, LocalDate rangeStart, Domain.Trail trail) {
+                long selfLeast = self.lowerBound(days, domains, rangeStart);
+                long otherLeast = other.lowerBound(days, domains, rangeStart);
+                return self.tighten(days, domains, bound - otherLeast, rangeStart, trail)
+                        && other.tighten(days, domains, bound - selfLeast, rangeStart, trail);
+            }
+        };
+    }
+
+    /**
+     * @return The objective costing the number of days from the start of the
+     *         range to the last meeting, so that minimizing it finishes the
+     *         schedule as early as possible
+     */
+    public static Objective finish() {
+        return new Objective() {
+            @Override
+            long lowerBound(int[] days, Domain[] domains, LocalDate rangeStart) {
+                long finish = 0;
+                for (int i = 0; i < days.length; i++) {
+                    finish = Math.max(finish, earliest(days, domains, i));
+                }
+                return finish;
+            }
+
+            @Override
+            boolean tighten(int[] days, Domain[] domains, long bound, LocalDate rangeStart, Domain.Trail trail) {
+                for (int i = 0; i < days.length; i++) {
+                    if (days[i] == UNASSIGNED) {
+                        domains[i].keepBetween(0, bound - 1, trail);
+                        if (domains[i].isEmpty()) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return The objective costing the number of days between the first and
+     *         the last meeting
+     */
+    public static Objective span() {
+        return new Objective() {
+            // The last meeting is no earlier than any meeting's earliest day,
+            // and the first no later than any meeting's latest
+            @Override
+            long lowerBound(int[] days, Domain[] domains, LocalDate rangeStart) {
+                if (days.length == 0) {
+                    return 0;
+                }
+                long last = Long.MIN_VALUE, first = Long.MAX_VALUE;
+                for (int i = 0; i < days.length; i++) {
+                    last = Math.max(last, earliest(days, domains, i));
+                    first = Math.min(first, latest(days, domains, i));
+                }
+                return Math.max(0, last - first);
+            }
+
+            @Override
+            boolean tighten(int[] days, Domain[] domains, long bound, LocalDate rangeStart, Domain.Trail trail) {
+                long last = Long.MIN_VALUE, first = Long.MAX_VALUE;
+                for (int i = 0; i < days.length; i++) {
+                    last = Math.max(last, earliest(days, domains, i));
+                    first = Math.min(first, latest(days, domains, i));
+                }
+                for (int i = 0; i < days.length; i++) {
+                    if (days[i] == UNASSIGNED) {
+                        domains[i].keepBetween(last - bound + 1, first + bound - 1, trail);
+                        if (domains[i].isEmpty()) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Soft constraints are preferences rather than requirements: a schedule
+     * may break them, at a cost. Pass them here rather than among the CSP's
+     * constraints.
+     *
+     * @param weights Each soft constraint's cost if broken
+     * @return The objective costing the total weight of the broken soft
+     *         constraints
+     */
+    public static Objective penalties(Map<DateConstraint, Long> weights) {
+        Map<DateConstraint, Long> soft = Collections.unmodifiableMap(new HashMap<>(weights));
+        return new Objective() {
+            // A soft constraint the domains can no longer satisfy is sure to
+            // be broken
+            @Override
+            long lowerBound(int[] days, Domain[] domains, LocalDate rangeStart) {
+                long penalty = 0;
+                for (Map.Entry<DateConstraint, Long> entry : soft.entrySet()) {
+                    if (broken(entry.getKey(), days, domains, rangeStart)) {
+                        penalty += entry.getValue();
+                    }
+                }
+                return penalty;
+            }
+        };
+    }
+
+    /**
+     * Soft custom constraints, costed like soft comparisons; combine the two
+     * with plus.
+     *
+     * @param weights Each soft custom constraint's cost if broken
+     * @return The objective costing the total weight of the broken soft custom
+     *         constraints
+     * @see #penalties(Map)
+     */
+    public static Objective customPenalties(Map<CustomConstraint, Long> weights) {
+        Map<CustomConstraint, Long> soft = Collections.unmodifiableMap(new HashMap<>(weights));
+        return new Objective() {
+            @Override
+            long lowerBound(int[] days, Domain[] domains, LocalDate rangeStart) {
+                long penalty = 0;
+                for (Map.Entry<CustomConstraint, Long> entry : soft.entrySet()) {
+                    if (broken(entry.getKey(), days, domains, rangeStart)) {
+                        penalty += entry.getValue();
+                    }
+                }
+                return penalty;
+            }
+        };
+    }
+
+    /** Helper Methods */
+
+    private static int earliest(int[] days, Domain[] domains, int meeting) {
+        return days[meeting] == UNASSIGNED ? domains[meeting].min() : days[meeting];
+    }
+
+    private static int latest(int[] days, Domain[] domains, int meeting) {
+        return days[meeting] == UNASSIGNED ? domains[meeting].max() : days[meeting];
+    }
+
+    // The meeting's domain, or only its assigned day
+    private static Domain options(int[] days, Domain[] domains, int meeting) {
+        Domain options = new Domain(domains[meeting]);
+        if (days[meeting] != UNASSIGNED) {
+            options.keepBetween(days[meeting], days[meeting], null);
+        }
+        return options;
+    }
+
+    /**
+     * @return Whether no schedule from the domains keeping the assigned days
+     *         satisfies the constraint
+     */
+    private static boolean broken(DateConstraint constraint, int[] days, Domain[] domains, LocalDate rangeStart) {
+        Domain left = options(days, domains, constraint.L_VAL);
+        if (constraint.arity() == 1) {
+            left.restrict(constraint.OPERATOR, ChronoUnit.DAYS.between(rangeStart,
+                    ((UnaryDateConstraint) constraint).R_VAL), null);
+            return left.isEmpty();
+        }
+        Domain right = options(days, domains, ((BinaryDateConstraint) constraint).R_VAL);
+        switch (constraint.OPERATOR) {
+        case EQ:
+            left.retainAll(right, null);
+            return left.isEmpty();
+        case NE:
+            return left.size() == 1 && right.size() == 1 && left.min() == right.min();
+        case LT:
+            return left.min() >= right.max();
+        case LE:
+            return left.min() > right.max();
+        case GT:
+            return left.max() <= right.min();
+        default:
+            return left.max() < right.min();
+        }
+    }
+
+    private static boolean broken(CustomConstraint custom, int[] days, Domain[] domains, LocalDate rangeStart) {
+        int[] scope = custom.scope();
+        Domain[] options = new Domain[scope.length];
+        for (int i = 0; i < scope.length; i++) {
+            options[i] = options(days, domains, scope[i]);
+        }
+        return !custom.propagate(options, rangeStart, null);
+    }
+
+}
@@ -0,0 +1,110 @@
+package csp;
+
+import java.time.LocalDate;
+
+/**
+ * The comparison operators a DateConstraint may place between its left and
+ * right operands, compiled once from their symbols so that checking a
+ * constraint is a comparison of two day numbers rather than a String match.
+ */
+public enum Operator {
+
+    EQ("==") {
+        @Override
+        public boolean test(long left, long right) {
+            return left == right;
+        }
+    },
+    NE("!=") {
+        @Override
+        public boolean test(long left, long right) {
+            return left != right;
+        }
+    },
+    LT("<") {
+        @Override
+        public boolean test(long left, long right) {
+            return left < right;
+        }
+    },
+    LE("<=") {
+        @Override
+        public boolean test(long left, long right) {
+            return left <= right;
+        }
+    },
+    GT(">") {
+        @Override
+        public boolean test(long left, long right) {
+            return left > right;
+        }
+    },
+    GE(">=") {
+        @Override
+        public boolean test(long left, long right) {
+            return left >= right;
+        }
+    };
+
+    public final String SYMBOL;
+
+    Operator(String symbol) {
+        SYMBOL = symbol;
+    }
+
+    /**
+     * Compares two days, e.g. as given by LocalDate.toEpochDay
+     *
+     * @param left  The left operand's day
+     * @param right The right operand's day
+     * @return Whether the operator holds between them
+     */
+    public abstract boolean test(long left, long right);
+
+    /**
+     * @param left  The left operand
+     * @param right The right operand
+     * @return Whether the operator holds between the two dates
+     */
+    public boolean test(LocalDate left, LocalDate right) {
+        return test(left.toEpochDay(), right.toEpochDay());
+    }
+
+    /**
+     * @return The operator that holds with its operands swapped wherever this one
+     *         holds, e.g. > for <
+     */
+    public Operator converse() {
+        switch (this) {
+        case LT:
+            return GT;
+        case LE:
+            return GE;
+        case GT:
+            return LT;
+        case GE:
+            return LE;
+        default:
+            return this;
+        }
+    }
+
+    /**
+     * @param symbol One of "==", "!=", "<", "<=", ">", ">="
+     * @return The operator written with the given symbol
+     */
+    public static Operator of(String symbol) {
+        for (Operator operator : values()) {
+            if (operator.SYMBOL.equals(symbol)) {
+                return operator;
+            }
+        }
+        throw new IllegalArgumentException("Invalid constraint operator");
+    }
+
+    @Override
+    public String toString() {
+        return SYMBOL;
+    }
+
+}
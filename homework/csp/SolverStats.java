@@ -0,0 +1,105 @@
+package csp;
+
+import java.util.Arrays;
+
+/**
+ * Counters describing how hard the CSP solver worked: assignments tried,
+ * assignments undone, constraint checks, the dates each propagator pruned and
+ * the deepest the search went. Many prunings for few nodes means propagation
+ * is carrying the search; many backtracks per node means it is not.
+ */
+public class SolverStats {
+
+    /** The propagators whose pruning is counted separately */
+    public enum Propagator {
+        /** Unary constraints, applied once before search */
+        NODE_CONSISTENCY,
+        /** Earliest and latest dates pushed along ordering constraints */
+        BOUNDS,
+        /** AC-3 before search, and MAC during it */
+        ARC_CONSISTENCY,
+        /** Forward checking during search */
+        FORWARD_CHECKING,
+        /** The propagators of custom constraints */
+        CUSTOM
+    }
+
+    long nodes, backtracks, checks;
+    int maxDepth;
+    final long[] prunings = new long[Propagator.values().length];
+
+    /**
+     * @return The number of assignments tried
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return The number of assignments undone, whether they failed or their
+     *         subtree was exhausted
+     */
+    public long backtracks() {
+        return backtracks;
+    }
+
+    /**
+     * @return The number of times a constraint was tested against assigned
+     *         dates or revised against domains
+     */
+    public long checks() {
+        return checks;
+    }
+
+    /**
+     * @param propagator One of the solver's propagators
+     * @return The number of dates it removed from domains
+     */
+    public long prunings(Propagator propagator) {
+        return prunings[propagator.ordinal()];
+    }
+
+    /**
+     * @return The total number of dates removed from domains
+     */
+    public long prunings() {
+        return Arrays.stream(prunings).sum();
+    }
+
+    /**
+     * @return The most meetings assigned at once; a connected component
+     *         searched on its own counts only its own meetings
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("nodes: %d, backtracks: %d, checks: %d, prunings: %s, max depth: %d", nodes,
+                backtracks, checks, Arrays.toString(prunings), maxDepth);
+    }
+
+    /** Helper Methods */
+
+    void prune(Propagator propagator, long dates) {
+        prunings[propagator.ordinal()] += dates;
+    }
+
+    void merge(SolverStats other) {
+        nodes += other.nodes;
+        backtracks += other.backtracks;
+        checks += other.checks;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        for (int i = 0; i < prunings.length; i++) {
+            prunings[i] += other.prunings[i];
+        }
+    }
+
+    void reset() {
+        nodes = backtracks = checks = 0;
+        maxDepth = 0;
+        Arrays.fill(prunings, 0);
+    }
+
+}
@@ -0,0 +1,75 @@
+package nim;
+
+import java.util.ArrayList;
+
+/**
+ * GameTreeNode to manage the Nim game tree. The search itself runs on
+ * primitive state; these nodes are only built when tree capture is on.
+ */
+class GameTreeNode {
+
+    int remaining, action, score;
+    boolean isMax;
+    ArrayList<GameTreeNode> children;
+
+    /**
+     * Constructs a new GameTreeNode with the given number of stones remaining in
+     * the pile, and the action that led to it. We also initialize an empty
+     * ArrayList of children that can be added-to during search, and a placeholder
+     * score of -1 to be updated during search.
+     *
+     * @param remaining The Nim game state represented by this node: the # of stones
+     *                  remaining in the pile
+     * @param action    The action (# of stones removed) that led to this node
+     * @param isMax     Boolean as to whether or not this is a maxnode
+     */
+    GameTreeNode(int remaining, int action, boolean isMax) {
+        this.remaining = remaining;
+        this.action = action;
+        this.isMax = isMax;
+        children = new ArrayList<>();
+        score = -1;
+    }
+
+    /**
+     * Appends a child node to the current node's children list.
+     * 
+     * @param child GameTreeNode representing the child that will be added to
+     *              children list
+     */
+    public void addChild(GameTreeNode child) {
+        children.add(child);
+    }
+
+    /**
+     * Scores the current node and returns it's new value.
+     * 
+     * @param score Integer representing the new value for the node.
+     * @return integer value representing the new value for the node.
+     *
+     */
+    public int scoreNode(int score) {
+        this.score = score;
+        return this.score;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof GameTreeNode
+                ? remaining == ((GameTreeNode) other).remaining && isMax == ((GameTreeNode) other).isMax
+                        && action == ((GameTreeNode) other).action
+                : false;
+    }
+
+    @Override
+    public int hashCode() {
+        return remaining + ((isMax) ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Remaining: %d\nAction: %d\nScore: %d\nisMax: %b", this.remaining, this.action, this.score,
+                this.isMax);
+    }
+
+}
@@ -0,0 +1,140 @@
+package nim;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of Sprague-Grundy values for a single pile under some subtraction set.
+ * Values are computed on demand and the table is extended incrementally, so a
+ * lookup only pays for piles larger than any seen before. Because a pile's
+ * Grundy value depends only on the previous max(moves) values, the sequence is
+ * eventually periodic: once a window of that many values repeats, the period is
+ * recorded and every larger pile is answered in O(1).
+ */
+class GrundyTable {
+
+    /** Returned by value for piles beyond the table that no period covers */
+    static final int UNKNOWN = -1;
+
+    /** Largest pile the table will compute before giving up on a period */
+    static final int LIMIT = 1 << 22;
+
+    private static final int INIT_CAPACITY = 1 << 6;
+    private static final long HASH_BASE = 0x100000001B3L;
+
+    private final int[] moves;
+    private final int window;
+    private final long leadingPower;
+    private final Map<Long, Integer> windowStarts;
+    private int[] values;
+    private int computed, periodStart, period;
+    private long windowHash;
+
+    /**
+     * Constructs a new, empty GrundyTable for the given subtraction set.
+     *
+     * @param moves The allowed removals, sorted ascending, each >= 1
+     */
+    GrundyTable(int[] moves) {
+        this.moves = moves;
+        this.window = moves[moves.length - 1];
+        long power = 1;
+        for (int i = 1; i < window; i++) {
+            power *= HASH_BASE;
+        }
+        this.leadingPower = power;
+        this.windowStarts = new HashMap<>();
+        this.values = new int[INIT_CAPACITY];
+        this.periodStart = -1;
+    }
+
+    /**
+     * Checks a subtraction set given by a caller and puts it in the form the
+     * table expects.
+     *
+     * @param moves The allowed removals, in any order
+     * @return The removals sorted ascending without duplicates
+     * @throws IllegalArgumentException if there are none or any is < 1
+     */
+    static int[] subtractionSet(int... moves) {
+        if (moves.length == 0) {
+            throw new IllegalArgumentException("Empty move set");
+        }
+        int[] sorted = Arrays.stream(moves).sorted().distinct().toArray();
+        if (sorted[0] < 1) {
+            throw new IllegalArgumentException("Invalid move: " + sorted[0]);
+        }
+        return sorted;
+    }
+
+    /**
+     * @param remaining The # of stones in the pile
+     * @return The Grundy value of a pile of the given size, or UNKNOWN if it lies
+     *         beyond LIMIT and no period has been found
+     */
+    synchronized int value(int remaining) {
+        if (remaining >= computed && periodStart < 0) {
+            extend(Math.min(remaining, LIMIT));
+        }
+        if (remaining < computed) {
+            return values[remaining];
+        }
+        return periodStart >= 0 ? values[periodStart + (remaining - periodStart) % period] : UNKNOWN;
+    }
+
+    /**
+     * @return The period of the Grundy sequence, or 0 if none has been found yet
+     */
+    synchronized int period() {
+        return periodStart >= 0 ? period : 0;
+    }
+
+    /** Helper Methods */
+
+    // Computes values up to and including the given pile, stopping early once
+    // the sequence is known to repeat
+    private void extend(int target) {
+        boolean[] seen = new boolean[moves.length + 2];
+        while (computed <= target && periodStart < 0) {
+            if (computed == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            int n = computed;
+            Arrays.fill(seen, false);
+            for (int move : moves) {
+                if (move > n) {
+                    break;
+                }
+                seen[values[n - move]] = true;
+            }
+            int mex = 0;
+            while (seen[mex]) {
+                mex++;
+            }
+            values[n] = mex;
+            computed++;
+            recordWindow(n);
+        }
+    }
+
+    // Rolls the hash of the last `window` values forward to end at index n, and
+    // checks whether that window has been seen before
+    private void recordWindow(int n) {
+        if (n >= window) {
+            windowHash -= values[n - window] * leadingPower;
+        }
+        windowHash = windowHash * HASH_BASE + values[n];
+        if (n < window - 1) {
+            return;
+        }
+        int start = n - window + 1;
+        Integer earlier = windowStarts.putIfAbsent(windowHash, start);
+        if (earlier != null && Arrays.equals(values, earlier, earlier + window, values, start, start + window)) {
+            periodStart = earlier;
+            period = start - earlier;
+            windowStarts.clear();
+        }
+    }
+
+}
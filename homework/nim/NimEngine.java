@@ -0,0 +1,117 @@
+package nim;
+
+/**
+ * Generalized Nim engine for any number of piles and an arbitrary set of
+ * allowed removals, such as {1, 3, 4}. By the Sprague-Grundy theorem a
+ * multi-pile position is lost for the side to move exactly when the XOR of its
+ * piles' Grundy values is 0, so positions are solved pile by pile from a
+ * cached GrundyTable instead of searching the product of the piles' states.
+ */
+public class NimEngine {
+
+    private final int[] moves;
+    private final GrundyTable table;
+
+    /**
+     * Constructs a new NimEngine for the game in which any of the given numbers
+     * of stones may be removed from a single pile per turn.
+     *
+     * @param moves The allowed removals, each >= 1
+     */
+    NimEngine(int... moves) {
+        this.moves = GrundyTable.subtractionSet(moves);
+        this.table = new GrundyTable(this.moves);
+    }
+
+    /**
+     * Constructs a new NimEngine for normal Nim, in which any number of stones
+     * may be removed from a single pile per turn.
+     */
+    NimEngine() {
+        this.moves = null;
+        this.table = null;
+    }
+
+    /**
+     * @return A NimEngine for normal Nim
+     */
+    static NimEngine normal() {
+        return new NimEngine();
+    }
+
+    /**
+     * @param remaining The # of stones in a single pile
+     * @return The Grundy value of that pile
+     */
+    public int grundy(int remaining) {
+        if (table == null) {
+            return remaining;
+        }
+        int value = table.value(remaining);
+        if (value == GrundyTable.UNKNOWN) {
+            throw new IllegalStateException("No Grundy value for a pile of " + remaining);
+        }
+        return value;
+    }
+
+    /**
+     * @param piles The number of stones in each pile
+     * @return The Grundy value of the whole position: the XOR of its piles'
+     *         values, 0 exactly when the side to move loses
+     */
+    public int grundy(int[] piles) {
+        int total = 0;
+        for (int pile : piles) {
+            total ^= grundy(pile);
+        }
+        return total;
+    }
+
+    /**
+     * Chooses the action for the side to move: the first move (by pile, then
+     * smallest removal) that leaves a position of Grundy value 0, or when there is
+     * none the smallest legal removal from the first pile that allows one. Normal
+     * Nim is answered by the oracle's nim-sum move, which follows the same rule.
+     *
+     * @param piles The number of stones in each pile
+     * @return The action as {pile index, # of stones to remove}, or null if no
+     *         legal move remains
+     */
+    public int[] choose(int[] piles) {
+        if (moves == null) {
+            return NimOracle.nimSumMove(piles);
+        }
+        int total = grundy(piles);
+        if (total != 0) {
+            for (int i = 0; i < piles.length; i++) {
+                int target = grundy(piles[i]) ^ total;
+                int take = winningRemoval(piles[i], target);
+                if (take > 0) {
+                    return new int[] { i, take };
+                }
+            }
+        }
+        for (int i = 0; i < piles.length; i++) {
+            if (piles[i] >= moves[0]) {
+                return new int[] { i, moves[0] };
+            }
+        }
+        return null;
+    }
+
+    /** Helper Methods */
+
+    // Smallest removal that takes a pile to the given Grundy value, 0 if none
+    private int winningRemoval(int remaining, int target) {
+        for (int move : moves) {
+            if (move > remaining) {
+                break;
+            }
+            if (grundy(remaining - move) == target) {
+                return move;
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,117 @@
+package nim;
+
+/**
+ * Move oracle for the solved variants of Nim: answers a position directly from
+ * a closed-form rule or a cached Sprague-Grundy table instead of searching
+ * the game tree. Single-pile subtraction games with moves {1, ..., k} are lost
+ * for the side to move exactly when the pile is a multiple of (k + 1); other
+ * subtraction sets are looked up in a cached, periodic GrundyTable; and
+ * multi-pile normal Nim is decided by the nim-sum (XOR) of the piles.
+ */
+public class NimOracle {
+
+    /** Returned by choose when the oracle cannot answer a position */
+    public static final int UNSOLVED = 0;
+
+    private final int[] moves;
+    private final boolean contiguous;
+    private final GrundyTable grundy;
+
+    /**
+     * Constructs a new NimOracle for the single-pile subtraction game in which
+     * the given numbers of stones may be removed per turn.
+     *
+     * @param moves The allowed removals, each >= 1
+     */
+    NimOracle(int... moves) {
+        this.moves = GrundyTable.subtractionSet(moves);
+        this.contiguous = this.moves[this.moves.length - 1] == this.moves.length;
+        this.grundy = contiguous ? null : new GrundyTable(this.moves);
+    }
+
+    /**
+     * @param maxRemoval The most stones that may be removed per turn
+     * @return A NimOracle for the subtraction game with moves {1, ..., maxRemoval}
+     */
+    static NimOracle subtraction(int maxRemoval) {
+        int[] moves = new int[maxRemoval];
+        for (int i = 0; i < maxRemoval; i++) {
+            moves[i] = i + 1;
+        }
+        return new NimOracle(moves);
+    }
+
+    /**
+     * Chooses the action for the side to move in a single pile of the given size:
+     * the smallest winning removal when one exists, and otherwise the smallest
+     * legal removal.
+     *
+     * @param remaining Integer representing the amount of stones left in the pile
+     * @return An int action representing the number of stones to remove, or
+     *         UNSOLVED if the position has no legal move or its Grundy value is
+     *         unknown
+     */
+    public int choose(int remaining) {
+        if (remaining < moves[0]) {
+            return UNSOLVED;
+        }
+        if (contiguous) {
+            int winning = remaining % (moves.length + 1);
+            return winning == 0 ? moves[0] : winning;
+        }
+        if (grundy.value(remaining) == GrundyTable.UNKNOWN) {
+            return UNSOLVED;
+        }
+        for (int move : moves) {
+            if (move <= remaining && grundy.value(remaining - move) == 0) {
+                return move;
+            }
+        }
+        return moves[0];
+    }
+
+    /**
+     * @param remaining Integer representing the amount of stones left in the pile
+     * @return The Sprague-Grundy value of a pile of the given size, or
+     *         GrundyTable.UNKNOWN if it cannot be computed
+     */
+    public int grundy(int remaining) {
+        if (contiguous) {
+            return remaining % (moves.length + 1);
+        }
+        return grundy.value(remaining);
+    }
+
+    /**
+     * Chooses the action for the side to move in multi-pile normal Nim, where any
+     * number of stones may be taken from a single pile: the winning move leaves
+     * piles whose nim-sum is 0, and when there is none a single stone is taken
+     * from the first non-empty pile.
+     *
+     * @param piles The number of stones in each pile
+     * @return The action as {pile index, # of stones to remove}, or null if every
+     *         pile is empty
+     */
+    public static int[] nimSumMove(int[] piles) {
+        int nimSum = 0, first = -1;
+        for (int i = 0; i < piles.length; i++) {
+            nimSum ^= piles[i];
+            if (first < 0 && piles[i] > 0) {
+                first = i;
+            }
+        }
+        if (first < 0) {
+            return null;
+        }
+        if (nimSum != 0) {
+            for (int i = 0; i < piles.length; i++) {
+                int target = piles[i] ^ nimSum;
+                if (target < piles[i]) {
+                    return new int[] { i, piles[i] - target };
+                }
+            }
+        }
+        return new int[] { first, 1 };
+    }
+
+}
@@ -2,19 +2,73 @@ package nim;
 
 import java.lang.Math;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Artificial Intelligence responsible for playing the game of Nim! Implements
- * the alpha-beta-pruning mini-max search algorithm
+ * Artificial Intelligence responsible for playing the game of Nim! Answers
+ * solved positions from a NimOracle and otherwise implements the
+ * alpha-beta-pruning mini-max search algorithm
  */
-public class NimPlayer {
+public class NimPlayer implements NimStrategy {
+
+    /**
+     * Scores in the view of the agent: a proven loss, a proven win, and a state
+     * whose outcome lies beyond the current search horizon
+     */
+    static final int LOSS = -1, HORIZON = 0, WIN = 1;
 
     private final int MAX_REMOVAL;
+    private final long budgetNanos;
+    private final NimOracle oracle;
+    private final TranspositionTable table;
+    private final NimSearch[] searches;
+    private ExecutorService helpers;
+    private SearchStats lastStats, totalStats;
+    private long lastNodes, lastNanos;
 
     NimPlayer(int MAX_REMOVAL) {
+        this(MAX_REMOVAL, 0);
+    }
+
+    /**
+     * Constructs a new NimPlayer whose tree search answers within the given time
+     * budget per move.
+     *
+     * @param MAX_REMOVAL  The most stones that may be removed per turn
+     * @param budgetMillis Milliseconds each call to search may take before it
+     *                     returns its best move so far, or 0 for no limit
+     */
+    NimPlayer(int MAX_REMOVAL, long budgetMillis) {
+        this(MAX_REMOVAL, budgetMillis, 1);
+    }
+
+    /**
+     * Constructs a new NimPlayer whose tree search runs on the given number of
+     * threads (Lazy SMP): every thread searches the same root by iterative
+     * deepening and all of them share the player's transposition table.
+     *
+     * @param MAX_REMOVAL  The most stones that may be removed per turn
+     * @param budgetMillis Milliseconds each call to search may take before it
+     *                     returns its best move so far, or 0 for no limit
+     * @param threads      Number of search threads, >= 1
+     */
+    NimPlayer(int MAX_REMOVAL, long budgetMillis, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid thread count");
+        }
         this.MAX_REMOVAL = MAX_REMOVAL;
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.oracle = NimOracle.subtraction(MAX_REMOVAL);
+        this.table = new TranspositionTable();
+        this.searches = new NimSearch[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new NimSearch(MAX_REMOVAL, table);
+        }
     }
 
     /**
@@ -23,173 +77,189 @@ public class NimPlayer {
      * @return An int action representing the number of stones to remove in the
      *         range of [1, MAX_REMOVAL]
      */
+    @Override
     public int choose(int remaining) {
-        int choice = this.MAX_REMOVAL;
-        GameTreeNode root = new GameTreeNode(remaining, 0, true);
-        int rootScore = alphaBetaMinimax(root, Integer.MIN_VALUE, Integer.MAX_VALUE, true,
-                new HashMap<GameTreeNode, Integer>());
-        for (GameTreeNode child : root.children) {
-            if (child.score == rootScore) {
-                choice = Math.min(choice, child.action);
-            }
+        int choice = oracle.choose(remaining);
+        if (choice == NimOracle.UNSOLVED) {
+            return search(remaining);
         }
+        lastNodes = 0;
+        lastNanos = 0;
         return choice;
     }
 
     /**
-     * Constructs the minimax game tree by the tenets of alpha-beta pruning with
-     * memoization for repeated states.
-     * 
-     * @param node    The root of the current game sub-tree
-     * @param alpha   Smallest minimax score possible
-     * @param beta    Largest minimax score possible
-     * @param isMax   Boolean representing whether the given node is a max (true) or
-     *                min (false) node
-     * @param visited Map of GameTreeNodes to their minimax scores to avoid
-     *                repeating large subtrees
-     * @return Minimax score of the given node + [Side effect] constructs the game
-     *         tree originating from the given node
+     * Chooses an action by searching the game tree rather than asking the
+     * oracle; used for rule sets the oracle cannot answer. Searches by iterative
+     * deepening, one ply deeper each iteration, until the root's outcome is
+     * proven or the time budget runs out, in which case the best move of the
+     * last completed iteration is returned. With more than one thread, helper
+     * threads start one ply deeper on alternate threads so that they run ahead
+     * of the main search and fill the shared table for it.
+     *
+     * @param remaining Integer representing the amount of stones left in the pile
+     * @return An int action representing the number of stones to remove in the
+     *         range of [1, MAX_REMOVAL]
      */
-    private int alphaBetaMinimax(GameTreeNode node, int alpha, int beta, boolean isMax,
-            Map<GameTreeNode, Integer> visited) {
-        // If we reached a terminal node, return it's utility in the view of the agent
-        if (node.remaining == 0) {
-            return node.scoreNode(isMax ? 0 : 1);
+    int search(int remaining) {
+        long start = System.nanoTime();
+        long deadline = budgetNanos > 0 ? start + budgetNanos : Long.MAX_VALUE;
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Future<Integer>> running = new ArrayList<>();
+        // Every state below the root may be stored by some thread, so make room
+        // for all of them before the table is shared; a root too big for that
+        // is searched by the main thread alone
+        if (searches.length > 1 && table.reserve(2 * (remaining + 1L))) {
+            table.shared(true);
+            for (int i = 1; i < searches.length; i++) {
+                NimSearch helper = searches[i];
+                int firstDepth = 1 + i % 2;
+                running.add(helperPool().submit(() -> helper.run(remaining, firstDepth, deadline, stop)));
+            }
         }
-        if (isMax) {
-            int vertex = Integer.MIN_VALUE;
-            // Generate and loop through the current node's children
-            for (int action = this.MAX_REMOVAL; action > 0; action--) {
-                // If the action returns a value of remaining stones to be < 0, continue
-                if (node.remaining - action < 0) {
-                    continue;
-                }
-                GameTreeNode child = new GameTreeNode(node.remaining - action, action, isMax ? false : true);
-                // If we already found a child's minimax value, compare the vertex with
-                // pre-computed value, otherwise compare with it's generated
-                // minimax value
-                if (visited.containsKey(child)) {
-                    vertex = Math.max(vertex, visited.get(child));
-                } else {
-                    vertex = Math.max(vertex, alphaBetaMinimax(child, alpha, beta, false, visited));
-                }
-                // Set alpha value for the max node
-                alpha = Math.max(alpha, vertex);
-                if (beta <= alpha) {
-                    break;
+        int choice, rootScore;
+        try {
+            choice = searches[0].run(remaining, 1, deadline, stop);
+            rootScore = searches[0].rootScore();
+            stop.set(true);
+            for (int i = 0; i < running.size(); i++) {
+                int helperChoice = awaitHelper(running.get(i));
+                // A helper that proved the root before the main search did has
+                // the better answer
+                if (rootScore == HORIZON && searches[i + 1].rootScore() != HORIZON) {
+                    choice = helperChoice;
+                    rootScore = searches[i + 1].rootScore();
                 }
-                // Adds generated node to the current node's children(list)
-                node.addChild(child);
             }
-            // After determining the minimax value of the current max node, set
-            // the max node's minimax value and store it's value in our memo map.
-            node.scoreNode(vertex);
-            visited.put(node, vertex);
-            // return the current node's minimax value.
-            return vertex;
-        } else {
-            int vertex = Integer.MAX_VALUE;
-            // Generate and loop through the current node's children
-            for (int action = this.MAX_REMOVAL; action > 0; action--) {
-                // If the action returns a value of remaining stones to be < 0, continue
-                if (node.remaining - action < 0) {
-                    continue;
-                }
-                GameTreeNode child = new GameTreeNode(node.remaining - action, action, isMax ? false : true);
-                // If we already found a child's minimax value, compare the vertex with
-                // pre-computed value, otherwise compare with it's generated
-                // minimax value
-                if (visited.containsKey(child)) {
-                    vertex = Math.min(vertex, visited.get(child));
-                } else {
-                    vertex = Math.min(vertex, alphaBetaMinimax(child, alpha, beta, true, visited));
-                }
-                // Set beta value for the min node
-                beta = Math.max(beta, vertex);
-                if (beta <= alpha) {
-                    break;
-                }
-                // Adds generated node to the current node's children(list)
-                node.addChild(child);
+        } finally {
+            stop.set(true);
+            table.shared(false);
+        }
+        lastNanos = System.nanoTime() - start;
+        lastNodes = 0;
+        for (NimSearch search : searches) {
+            lastNodes += search.nodes();
+        }
+        if (lastStats != null) {
+            lastStats.reset();
+            for (NimSearch search : searches) {
+                lastStats.merge(search.stats());
             }
-            // After determining the minimax value of the current min node, set
-            // the min node's minimax value and store it's value in our memo map.
-            node.scoreNode(vertex);
-            visited.put(node, vertex);
-            // return the current node's minimax value.
-            return vertex;
+            lastStats.recordMove(lastNanos);
+            totalStats.merge(lastStats);
+        }
+        // When every move loses, take as few stones as possible and hope the
+        // opponent slips
+        if (rootScore == LOSS || choice == 0) {
+            return 1;
         }
+        return choice;
     }
 
-}
-
-/**
- * GameTreeNode to manage the Nim game tree.
- */
-class GameTreeNode {
+    /**
+     * @return The number of nodes expanded, over all threads, by the last call to
+     *         search, or 0 if the last move came from the oracle
+     */
+    @Override
+    public long lastNodes() {
+        return lastNodes;
+    }
 
-    int remaining, action, score;
-    boolean isMax;
-    ArrayList<GameTreeNode> children;
+    /**
+     * @return Nodes expanded per second, over all threads, by the last call to
+     *         search
+     */
+    double lastNodesPerSecond() {
+        return lastNanos == 0 ? 0 : lastNodes * 1e9 / lastNanos;
+    }
 
     /**
-     * Constructs a new GameTreeNode with the given number of stones remaining in
-     * the pile, and the action that led to it. We also initialize an empty
-     * ArrayList of children that can be added-to during search, and a placeholder
-     * score of -1 to be updated during search.
+     * Turns on (or off) counting the work each search does, on every thread.
+     * While off, the search pays only a null check per counter.
      *
-     * @param remaining The Nim game state represented by this node: the # of stones
-     *                  remaining in the pile
-     * @param action    The action (# of stones removed) that led to this node
-     * @param isMax     Boolean as to whether or not this is a maxnode
+     * @param enabled Whether to collect SearchStats
+     */
+    void collectStats(boolean enabled) {
+        lastStats = enabled ? new SearchStats(MAX_REMOVAL) : null;
+        totalStats = enabled ? new SearchStats(MAX_REMOVAL) : null;
+        for (NimSearch search : searches) {
+            search.collectStats(enabled);
+        }
+    }
+
+    /**
+     * @return The work done by the last call to search, or null if stats are
+     *         off
      */
-    GameTreeNode(int remaining, int action, boolean isMax) {
-        this.remaining = remaining;
-        this.action = action;
-        this.isMax = isMax;
-        children = new ArrayList<>();
-        score = -1;
+    SearchStats lastStats() {
+        return lastStats;
     }
 
     /**
-     * Appends a child node to the current node's children list.
-     * 
-     * @param child GameTreeNode representing the child that will be added to
-     *              children list
+     * @return The work done by every call to search since stats were turned on,
+     *         or null if they are off
      */
-    public void addChild(GameTreeNode child) {
-        children.add(child);
+    SearchStats totalStats() {
+        return totalStats;
     }
 
     /**
-     * Scores the current node and returns it's new value.
-     * 
-     * @param score Integer representing the new value for the node.
-     * @return integer value representing the new value for the node.
+     * @return The principal variation found by the last call to search: the
+     *         actions both sides are expected to play, starting with ours
+     */
+    int[] principalVariation() {
+        return searches[0].principalVariation();
+    }
+
+    /**
+     * Turns on (or off) building the game tree of the main search thread, for
+     * debugging; search allocates nothing per node while this is off.
      *
+     * @param capture Whether to capture the tree of each search
      */
-    public int scoreNode(int score) {
-        this.score = score;
-        return this.score;
+    void captureTree(boolean capture) {
+        searches[0].captureTree(capture);
     }
 
-    @Override
-    public boolean equals(Object other) {
-        return other instanceof GameTreeNode
-                ? remaining == ((GameTreeNode) other).remaining && isMax == ((GameTreeNode) other).isMax
-                        && action == ((GameTreeNode) other).action
-                : false;
+    /**
+     * @return The game tree of the main thread's last completed iteration, or
+     *         null if tree capture is off
+     */
+    GameTreeNode lastTree() {
+        return searches[0].lastTree();
     }
 
-    @Override
-    public int hashCode() {
-        return remaining + ((isMax) ? 1 : 0);
+    /**
+     * @return The number of game states memoized in this player's transposition
+     *         table across all moves chosen so far
+     */
+    int tableSize() {
+        return table.size();
     }
 
-    @Override
-    public String toString() {
-        return String.format("Remaining: %d\nAction: %d\nScore: %d\nisMax: %b", this.remaining, this.action, this.score,
-                this.isMax);
+    /** Helper Methods */
+
+    // Helper threads are daemons so an idle player never keeps the JVM alive
+    private ExecutorService helperPool() {
+        if (helpers == null) {
+            helpers = Executors.newFixedThreadPool(searches.length - 1, runnable -> {
+                Thread thread = new Thread(runnable, "nim-search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return helpers;
+    }
+
+    private static int awaitHelper(Future<Integer> helper) {
+        try {
+            return helper.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search helper failed", e.getCause());
+        }
     }
 
 }
@@ -4,6 +4,10 @@ import static org.junit.Assert.*;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 public class NimPlayerTests {
 
@@ -100,4 +104,357 @@ public class NimPlayerTests {
         assertEquals(1, nimesis.choose(7000));
     }
 
+    /**
+     * The transposition table lives as long as the player, so a position it has
+     * already searched is answered without growing the table
+     */
+    @Test
+    public void NimPlayerTest_t8() {
+        NimPlayer nimesis = new NimPlayer(3);
+        assertEquals(1, nimesis.search(40));
+        int searched = nimesis.tableSize();
+        assertEquals(1, nimesis.search(40));
+        assertEquals(3, nimesis.search(35));
+        assertEquals(searched, nimesis.tableSize());
+    }
+
+    /**
+     * Reusing one player across many positions must never let a stored bound
+     * change the answer: in a subtraction game the winning move is to leave a
+     * multiple of (MAX_REMOVAL + 1), and the player takes 1 when no such move
+     * exists
+     */
+    @Test
+    public void NimPlayerTest_t9() {
+        for (int maxRemoval = 1; maxRemoval <= 5; maxRemoval++) {
+            NimPlayer nimesis = new NimPlayer(maxRemoval);
+            for (int remaining = 300; remaining > 0; remaining -= 7) {
+                int winning = remaining % (maxRemoval + 1);
+                assertEquals(winning == 0 ? 1 : winning, nimesis.search(remaining));
+            }
+            for (int remaining = 1; remaining <= 300; remaining++) {
+                int winning = remaining % (maxRemoval + 1);
+                assertEquals(winning == 0 ? 1 : winning, nimesis.search(remaining));
+            }
+        }
+    }
+
+    /**
+     * The oracle answers piles far too deep to search, instantly
+     */
+    @Test
+    public void NimPlayerTest_t10() {
+        NimPlayer nimesis = new NimPlayer(3);
+        assertEquals(1, nimesis.choose(1_000_000_000));
+        assertEquals(3, nimesis.choose(999_999_999));
+        assertEquals(0, nimesis.tableSize());
+    }
+
+    /**
+     * The oracle's Grundy table agrees with the closed form on contiguous move
+     * sets, and finds the winning move for a non-contiguous one: with moves
+     * {1, 3, 4}, piles of 0 and 2 (mod 7) are lost for the side to move
+     */
+    @Test
+    public void NimPlayerTest_t11() {
+        NimOracle oracle = new NimOracle(1, 3, 4);
+        for (int remaining = 0; remaining < 100; remaining++) {
+            assertEquals(remaining % 7 == 0 || remaining % 7 == 2, oracle.grundy(remaining) == 0);
+        }
+        assertEquals(1, oracle.choose(2));
+        assertEquals(1, oracle.choose(10));
+        assertEquals(3, oracle.choose(12));
+        assertEquals(4, oracle.choose(13));
+        assertEquals(oracle.grundy(1_000_000_004 % 7), oracle.grundy(1_000_000_004));
+
+        NimOracle subtraction = NimOracle.subtraction(3);
+        NimPlayer nimesis = new NimPlayer(3);
+        for (int remaining = 1; remaining < 100; remaining++) {
+            assertEquals(nimesis.search(remaining), subtraction.choose(remaining));
+        }
+    }
+
+    /**
+     * Multi-pile normal Nim: move to leave a nim-sum of 0
+     */
+    @Test
+    public void NimPlayerTest_t12() {
+        assertArrayEquals(new int[] { 0, 2 }, NimOracle.nimSumMove(new int[] { 3, 4, 5 }));
+        assertArrayEquals(new int[] { 0, 1 }, NimOracle.nimSumMove(new int[] { 1, 2, 3 }));
+        assertArrayEquals(new int[] { 1, 999_999_999 }, NimOracle.nimSumMove(new int[] { 0, 1_000_000_000, 1 }));
+        assertNull(NimOracle.nimSumMove(new int[] { 0, 0 }));
+    }
+
+    /**
+     * Multi-pile play with a custom move set is solved by XOR-ing per-pile
+     * Grundy values; the {1, 3, 4} sequence repeats with period 7
+     */
+    @Test
+    public void NimPlayerTest_t13() {
+        NimEngine engine = new NimEngine(1, 3, 4);
+        // Grundy values of 5 and 6 are 3 and 2; taking 1 from the 5-pile leaves 2 ^ 2
+        assertEquals(1, engine.grundy(new int[] { 5, 6 }));
+        assertArrayEquals(new int[] { 0, 1 }, engine.choose(new int[] { 5, 6 }));
+        assertEquals(0, engine.grundy(new int[] { 5, 5 }));
+        assertArrayEquals(new int[] { 0, 1 }, engine.choose(new int[] { 5, 5 }));
+        assertEquals(engine.grundy(1_000_000_000 % 7), engine.grundy(1_000_000_000));
+        assertNull(engine.choose(new int[] { 0, 0 }));
+
+        int[] piles = { 900_000_001, 123_456_789, 42, 7 };
+        int[] move = engine.choose(piles);
+        piles[move[0]] -= move[1];
+        assertEquals(0, engine.grundy(piles));
+    }
+
+    /**
+     * The engine's winning moves agree with the single-pile subtraction oracle,
+     * and with the nim-sum rule under normal Nim
+     */
+    @Test
+    public void NimPlayerTest_t14() {
+        NimEngine engine = new NimEngine(1, 2, 3);
+        NimOracle oracle = NimOracle.subtraction(3);
+        for (int remaining = 1; remaining < 200; remaining++) {
+            assertEquals(oracle.choose(remaining), engine.choose(new int[] { remaining })[1]);
+        }
+        NimEngine normal = NimEngine.normal();
+        int[][] positions = { { 3, 4, 5 }, { 1, 2, 3 }, { 0, 1_000_000_000, 1 } };
+        for (int[] position : positions) {
+            assertArrayEquals(NimOracle.nimSumMove(position), normal.choose(position));
+        }
+    }
+
+    /**
+     * A search too deep to finish within its time budget still answers on time,
+     * with a legal move from its last completed iteration
+     */
+    @Test
+    public void NimPlayerTest_t15() {
+        NimPlayer nimesis = new NimPlayer(3, 50);
+        long start = System.currentTimeMillis();
+        int choice = nimesis.search(100_000);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertTrue(choice >= 1 && choice <= 3);
+        // Shallow positions are still proven well within the budget
+        assertEquals(2, nimesis.search(10));
+        assertEquals(1, nimesis.search(40));
+    }
+
+    /**
+     * Lazy SMP: several threads sharing one table still agree with the closed
+     * form, move after move
+     */
+    @Test
+    public void NimPlayerTest_t16() {
+        NimPlayer nimesis = new NimPlayer(3, 0, 4);
+        NimOracle oracle = NimOracle.subtraction(3);
+        for (int remaining = 200; remaining > 0; remaining--) {
+            assertEquals(oracle.choose(remaining), nimesis.search(remaining));
+        }
+        assertTrue(nimesis.lastNodes() >= 0);
+    }
+
+    /**
+     * The principal variation plays the winning line out to the end, and the
+     * optional captured tree agrees with the search
+     */
+    @Test
+    public void NimPlayerTest_t17() {
+        NimPlayer nimesis = new NimPlayer(3);
+        assertEquals(2, nimesis.search(10));
+        int[] pv = nimesis.principalVariation();
+        assertEquals(2, pv[0]);
+        int remaining = 10;
+        for (int move : pv) {
+            remaining -= move;
+        }
+        assertEquals(0, remaining);
+        // The winner takes the last stone
+        assertEquals(1, pv.length % 2);
+        assertNull(nimesis.lastTree());
+
+        NimPlayer debug = new NimPlayer(3);
+        debug.captureTree(true);
+        assertEquals(2, debug.search(10));
+        GameTreeNode root = debug.lastTree();
+        assertEquals(10, root.remaining);
+        assertEquals(NimPlayer.WIN, root.score);
+        assertTrue(root.children.size() > 0);
+    }
+
+    /**
+     * Self-play harness: the first mover always wins a 7-stone game between two
+     * perfect players, and nimesis never loses a game it moves first in
+     */
+    @Test
+    public void NimPlayerTest_t18() {
+        NimSimulation mirror = new NimSimulation(3, 7, () -> new NimPlayer(3), () -> new NimPlayer(3));
+        NimSimulation.Report report = mirror.run(10_000, 4);
+        assertEquals(10_000, report.games());
+        assertEquals(0.5, report.winRate(0), 0);
+        assertEquals(0.5, report.winRate(1), 0);
+
+        NimSimulation random = new NimSimulation(3, 7, () -> new NimPlayer(3), () -> NimStrategy.random(3));
+        report = random.run(10_000, 3);
+        assertTrue(report.winRate(0) >= 0.5);
+        assertEquals(1.0, report.winRate(0) + report.winRate(1), 1e-9);
+        assertEquals(0, report.avgNodesPerMove(0), 0);
+
+        // A searching player reports the nodes it expands
+        NimSimulation searching = new NimSimulation(3, 40, () -> new NimStrategy() {
+            NimPlayer nimesis = new NimPlayer(3);
+
+            public int choose(int remaining) {
+                return nimesis.search(remaining);
+            }
+
+            public long lastNodes() {
+                return nimesis.lastNodes();
+            }
+        }, () -> NimStrategy.greedy(3));
+        report = searching.run(100, 2);
+        assertTrue(report.avgNodesPerMove(0) > 0);
+        assertTrue(report.avgMoveNanos(0) > 0);
+    }
+
+    /**
+     * The game server answers moves asynchronously, keeps sessions independent
+     * and forgets them once their game ends
+     */
+    @Test
+    public void NimPlayerTest_t19() {
+        try (NimServer server = new NimServer(3, 7, 4)) {
+            long game = server.open(), other = server.open();
+            assertEquals(NimServer.Status.ILLEGAL_MOVE, server.move(game, 4).join().status);
+
+            // Taking 3 leaves nimesis a lost pile of 4: it takes 1 and we take the rest
+            NimServer.Response response = server.move(game, 3).join();
+            assertEquals(NimServer.Status.IN_PROGRESS, response.status);
+            assertEquals(1, response.reply);
+            assertEquals(3, response.remaining);
+            assertEquals(NimServer.Status.PLAYER_WON, server.move(game, 3).join().status);
+            assertEquals(NimServer.Status.NO_SUCH_SESSION, server.move(game, 1).join().status);
+
+            // Taking 1 leaves a winning pile of 6: nimesis takes 2 and wins next turn
+            response = server.move(other, 1).join();
+            assertEquals(2, response.reply);
+            assertEquals(NimServer.Status.AGENT_WON, server.move(other, 1).join().status);
+            assertEquals(0, server.sessions());
+
+            List<CompletableFuture<NimServer.Response>> openings = new ArrayList<>();
+            for (int i = 0; i < 5_000; i++) {
+                openings.add(server.move(server.open(), 2));
+            }
+            for (CompletableFuture<NimServer.Response> opening : openings) {
+                // From 5, nimesis takes 1 and leaves us a lost pile of 4
+                assertEquals(4, opening.join().remaining);
+            }
+            assertEquals(5_000, server.sessions());
+        }
+    }
+
+    /**
+     * Search stats are off by default, count each call and accumulate across
+     * calls; with the table move tried first, most cutoffs come from the first
+     * move tried
+     */
+    @Test
+    public void NimPlayerTest_t20() {
+        NimPlayer nimesis = new NimPlayer(3);
+        assertNull(nimesis.lastStats());
+        nimesis.collectStats(true);
+
+        nimesis.search(200);
+        SearchStats first = nimesis.lastStats();
+        assertEquals(nimesis.lastNodes(), first.nodes());
+        assertTrue(first.cutoffs() > 0);
+        assertTrue(first.cutoffs(0) * 2 > first.cutoffs());
+        assertTrue(first.tableHits() > 0);
+        assertTrue(first.maxPly() > 0);
+        assertEquals(1, first.moves());
+        long firstNodes = first.nodes();
+
+        // A position the table has already proven costs a single node
+        nimesis.search(200);
+        assertEquals(1, nimesis.lastStats().nodes());
+        assertEquals(1.0, nimesis.lastStats().tableHitRate(), 0);
+        assertEquals(firstNodes + 1, nimesis.totalStats().nodes());
+        assertEquals(2, nimesis.totalStats().moves());
+    }
+
+    /**
+     * Closing the server while moves are still queued fails them rather than
+     * leaving their callers waiting forever, and moves made after it fail too
+     */
+    @Test
+    public void NimPlayerTest_t21() {
+        List<CompletableFuture<NimServer.Response>> moves = new ArrayList<>();
+        NimServer server = new NimServer(3, 7, 1);
+        for (int i = 0; i < 20_000; i++) {
+            moves.add(server.move(server.open(), 2));
+        }
+        server.close();
+        int answered = 0, cancelled = 0;
+        for (CompletableFuture<NimServer.Response> move : moves) {
+            try {
+                assertEquals(4, move.join().remaining);
+                answered++;
+            } catch (CancellationException e) {
+                cancelled++;
+            }
+        }
+        assertEquals(moves.size(), answered + cancelled);
+
+        CompletableFuture<NimServer.Response> late = server.move(server.open(), 2);
+        assertTrue(late.isCompletedExceptionally());
+        try {
+            late.join();
+            fail();
+        } catch (CancellationException e) {
+        }
+    }
+
+    /**
+     * A root too big to reserve table room for is searched by the main thread
+     * alone, and a shared table refuses to grow past its reservation
+     */
+    @Test
+    public void NimPlayerTest_t22() {
+        TranspositionTable table = new TranspositionTable();
+        assertFalse(table.reserve(2 * (Integer.MAX_VALUE + 1L)));
+        assertTrue(table.reserve(5_000));
+        table.shared(true);
+        try {
+            for (int i = 0; i < 10_000; i++) {
+                table.store(i, true, 0, TranspositionTable.EXACT, 1, 1);
+            }
+            fail();
+        } catch (IllegalStateException e) {
+        }
+
+        NimPlayer nimesis = new NimPlayer(3, 50, 4);
+        int choice = nimesis.search(Integer.MAX_VALUE - 1);
+        assertTrue(choice >= 1 && choice <= 3);
+    }
+
+    /**
+     * The oracle and the engine check their move sets the same way
+     */
+    @Test
+    public void NimPlayerTest_t23() {
+        for (int[] invalid : new int[][] { {}, { 0, 2 }, { 3, -1 } }) {
+            try {
+                new NimOracle(invalid);
+                fail();
+            } catch (IllegalArgumentException oracle) {
+                try {
+                    new NimEngine(invalid);
+                    fail();
+                } catch (IllegalArgumentException engine) {
+                    assertEquals(oracle.getMessage(), engine.getMessage());
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,360 @@
+package nim;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One thread's iterative-deepening alpha-beta search over the Nim game tree.
+ * Each NimSearch keeps its own move-ordering state (killer moves and history
+ * scores) and node count, while the transposition table may be shared with
+ * other searches running in parallel on the same root, as in Lazy SMP: the
+ * threads race through the same iterations and each profits from the states
+ * the others have already stored.
+ */
+class NimSearch {
+
+    private static final int KILLERS = 2, CHECK_INTERVAL = 1 << 10;
+
+    private final int maxRemoval;
+    private final TranspositionTable table;
+    private final int[][] history;
+    private int[][] killers, moveOrder;
+    private int[] pv;
+    private AtomicBoolean stop;
+    private GameTreeNode lastTree;
+    private SearchStats stats;
+    private long deadline, nodes;
+    private boolean stopped, captureTree;
+    private int rootScore, pvLength;
+
+    /**
+     * Constructs a new NimSearch over the subtraction game with moves
+     * {1, ..., maxRemoval}.
+     *
+     * @param maxRemoval The most stones that may be removed per turn
+     * @param table      Transposition table to read and store results in
+     */
+    NimSearch(int maxRemoval, TranspositionTable table) {
+        this.maxRemoval = maxRemoval;
+        this.table = table;
+        this.history = new int[2][maxRemoval + 1];
+        this.killers = new int[0][];
+        this.moveOrder = new int[0][];
+        this.pv = new int[0];
+    }
+
+    /**
+     * Searches by iterative deepening, one ply deeper each iteration, until the
+     * root's outcome is proven, the deadline passes or another thread raises
+     * the stop flag. Proving the root raises the stop flag for the others.
+     *
+     * @param remaining  The # of stones remaining in the pile at the root
+     * @param firstDepth Depth of the first iteration
+     * @param deadline   System.nanoTime() after which to give up
+     * @param stop       Flag shared by every search on this root
+     * @return The best action of the last completed iteration, or 0 if none
+     *         completed
+     */
+    int run(int remaining, int firstDepth, long deadline, AtomicBoolean stop) {
+        this.deadline = deadline;
+        this.stop = stop;
+        stopped = false;
+        nodes = 0;
+        rootScore = NimPlayer.HORIZON;
+        pvLength = 0;
+        if (stats != null) {
+            stats.reset();
+        }
+        int choice = 0;
+        int depth = firstDepth;
+        for (; rootScore == NimPlayer.HORIZON && depth < TranspositionTable.MAX_DEPTH; depth++) {
+            ensurePlies(depth);
+            GameTreeNode root = captureTree ? new GameTreeNode(remaining, 0, true) : null;
+            int score = negamax(root, remaining, true, depth, 0, NimPlayer.LOSS, NimPlayer.WIN);
+            if (stopped) {
+                break;
+            }
+            rootScore = score;
+            choice = TranspositionTable.move(table.probe(remaining, true));
+            lastTree = root;
+            collectPrincipalVariation(remaining, depth);
+        }
+        if (rootScore != NimPlayer.HORIZON) {
+            stop.set(true);
+        }
+        if (stats != null) {
+            stats.nodes += nodes;
+        }
+        return choice;
+    }
+
+    /**
+     * @return The root's score, in the view of the side to move there, after the
+     *         last completed iteration of run
+     */
+    int rootScore() {
+        return rootScore;
+    }
+
+    /**
+     * @return The number of nodes expanded by the last call to run
+     */
+    long nodes() {
+        return nodes;
+    }
+
+    /**
+     * @param enabled Whether later calls to run should count the work they do
+     */
+    void collectStats(boolean enabled) {
+        this.stats = enabled ? new SearchStats(maxRemoval) : null;
+    }
+
+    /**
+     * @return The work done by the last call to run, or null if stats are off
+     */
+    SearchStats stats() {
+        return stats;
+    }
+
+    /**
+     * @param capture Whether to build the GameTreeNode tree of each iteration as
+     *                it is searched; for debugging only, as it allocates a node
+     *                per state visited
+     */
+    void captureTree(boolean capture) {
+        this.captureTree = capture;
+    }
+
+    /**
+     * @return The game tree of the last completed iteration, or null if tree
+     *         capture was off
+     */
+    GameTreeNode lastTree() {
+        return lastTree;
+    }
+
+    /**
+     * @return A copy of the principal variation of the last completed iteration:
+     *         the sequence of actions both sides are expected to play from the
+     *         root
+     */
+    int[] principalVariation() {
+        return Arrays.copyOf(pv, pvLength);
+    }
+
+    /**
+     * Scores a state by negamax with alpha-beta pruning, down to the given depth.
+     * Every score is in the view of the side to move, so a child's score is
+     * negated (and its window flipped) on the way back up, and the max and min
+     * players share one code path. The state is just a stone count and a side
+     * bit: no objects are allocated per node unless tree capture is on. Scores
+     * are memoized in the shared transposition table, which outlives any one
+     * call to run, so positions seen on earlier moves or by other threads are
+     * answered without searching them again. Moves are tried best-first: the
+     * table's best move, then this ply's killer moves, then by history score.
+     * 
+     * @param node      The captured tree node for this state, or null when tree
+     *                  capture is off
+     * @param remaining The # of stones remaining in the pile
+     * @param isMax     Whether the agent (max) is the side to move
+     * @param depth     # of plies left to search below this state
+     * @param ply       # of plies between the search root and this state
+     * @param alpha     Score the side to move is already assured of
+     * @param beta      Score the opponent is already assured of holding it to
+     * @return Negamax score of the state for the side to move
+     */
+    private int negamax(GameTreeNode node, int remaining, boolean isMax, int depth, int ply, int alpha, int beta) {
+        if (++nodes % CHECK_INTERVAL == 0 && (System.nanoTime() > deadline || stop.get())) {
+            stopped = true;
+        }
+        if (stopped) {
+            return NimPlayer.HORIZON;
+        }
+        if (stats != null && ply > stats.maxPly) {
+            stats.maxPly = ply;
+        }
+        // If no stones remain, the opponent took the last one
+        if (remaining == 0) {
+            return capture(node, isMax, NimPlayer.LOSS);
+        }
+        if (depth == 0) {
+            return capture(node, isMax, NimPlayer.HORIZON);
+        }
+        // If we already searched this state deeply enough, its stored score is
+        // either the answer or a bound that narrows our window
+        long entry = table.probe(remaining, isMax);
+        int tableMove = TranspositionTable.move(entry);
+        if (stats != null) {
+            if (entry == TranspositionTable.MISS) {
+                stats.tableMisses++;
+            } else {
+                stats.tableHits++;
+            }
+        }
+        if (entry != TranspositionTable.MISS && TranspositionTable.depth(entry) >= depth) {
+            int stored = TranspositionTable.score(entry);
+            switch (TranspositionTable.flag(entry)) {
+            case TranspositionTable.EXACT:
+                return capture(node, isMax, stored);
+            case TranspositionTable.LOWER:
+                alpha = Math.max(alpha, stored);
+                break;
+            case TranspositionTable.UPPER:
+                beta = Math.min(beta, stored);
+                break;
+            }
+            if (beta <= alpha) {
+                return capture(node, isMax, stored);
+            }
+        }
+        int alphaOrig = alpha, best = Integer.MIN_VALUE, bestAction = 0;
+        int[] actions = moveOrder[ply];
+        int count = orderMoves(actions, remaining, ply, tableMove, isMax);
+        for (int i = 0; i < count; i++) {
+            int action = actions[i];
+            GameTreeNode child = null;
+            if (node != null) {
+                child = new GameTreeNode(remaining - action, action, !isMax);
+                node.addChild(child);
+            }
+            int score = -negamax(child, remaining - action, !isMax, depth - 1, ply + 1, -beta, -alpha);
+            if (stopped) {
+                return NimPlayer.HORIZON;
+            }
+            if (score > best) {
+                best = score;
+                bestAction = action;
+            }
+            alpha = Math.max(alpha, best);
+            if (alpha >= beta) {
+                recordCutoff(action, depth, ply, tableMove, isMax);
+                if (stats != null) {
+                    stats.cutoffsByIndex[i]++;
+                }
+                break;
+            }
+        }
+        // Store the state's score in our table; proven wins and losses hold at
+        // any depth
+        int flag = flagFor(best, alphaOrig, beta);
+        table.store(remaining, isMax, best, flag, isProven(best, flag) ? TranspositionTable.MAX_DEPTH : depth,
+                bestAction);
+        return capture(node, isMax, best);
+    }
+
+    // Records a score on the captured tree node, in the view of the agent
+    private static int capture(GameTreeNode node, boolean isMax, int score) {
+        if (node != null) {
+            node.scoreNode(isMax ? score : -score);
+        }
+        return score;
+    }
+
+    // Follows the table's best moves from the root into the preallocated pv
+    private void collectPrincipalVariation(int remaining, int depth) {
+        boolean isMax = true;
+        pvLength = 0;
+        while (pvLength < depth && remaining > 0) {
+            int move = TranspositionTable.move(table.probe(remaining, isMax));
+            if (move == 0) {
+                break;
+            }
+            pv[pvLength++] = move;
+            remaining -= move;
+            isMax = !isMax;
+        }
+    }
+
+    /**
+     * Classifies a node's score against the window it was searched with.
+     * 
+     * @param score Minimax score returned for the node
+     * @param alpha Alpha the node was entered with
+     * @param beta  Beta the node was entered with
+     * @return UPPER if the node failed low, LOWER if it failed high, and EXACT
+     *         otherwise
+     */
+    private static int flagFor(int score, int alpha, int beta) {
+        if (score <= alpha) {
+            return TranspositionTable.UPPER;
+        }
+        return score >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+    }
+
+    private static boolean isProven(int score, int flag) {
+        return (score == NimPlayer.WIN && flag != TranspositionTable.UPPER)
+                || (score == NimPlayer.LOSS && flag != TranspositionTable.LOWER);
+    }
+
+    /**
+     * Fills the given buffer with the legal actions from a state, best-first:
+     * the transposition table's move, this ply's killer moves, then the rest by
+     * descending history score (larger actions first on ties).
+     * 
+     * @param actions   Buffer of at least MAX_REMOVAL entries to fill
+     * @param remaining The # of stones remaining in the pile
+     * @param ply       # of plies between the search root and this state
+     * @param tableMove Best action stored for this state, 0 if none
+     * @param isMax     Whether the agent (max) is the side to move
+     * @return The number of legal actions written to the buffer
+     */
+    private int orderMoves(int[] actions, int remaining, int ply, int tableMove, boolean isMax) {
+        int count = Math.min(remaining, maxRemoval);
+        for (int i = 0; i < count; i++) {
+            int action = count - i, key = orderKey(action, ply, tableMove, isMax);
+            int j = i;
+            while (j > 0 && orderKey(actions[j - 1], ply, tableMove, isMax) < key) {
+                actions[j] = actions[j - 1];
+                j--;
+            }
+            actions[j] = action;
+        }
+        return count;
+    }
+
+    private int orderKey(int action, int ply, int tableMove, boolean isMax) {
+        if (action == tableMove) {
+            return Integer.MAX_VALUE;
+        }
+        for (int k = 0; k < KILLERS; k++) {
+            if (killers[ply][k] == action) {
+                return Integer.MAX_VALUE - 1 - k;
+            }
+        }
+        return history[isMax ? 1 : 0][action];
+    }
+
+    /**
+     * Remembers an action that caused a cutoff: as a killer move for its ply,
+     * unless the table already ordered it first, and in the history table
+     * weighted by the depth of the subtree it pruned.
+     */
+    private void recordCutoff(int action, int depth, int ply, int tableMove, boolean isMax) {
+        int[] plyKillers = killers[ply];
+        if (action != tableMove && plyKillers[0] != action) {
+            System.arraycopy(plyKillers, 0, plyKillers, 1, KILLERS - 1);
+            plyKillers[0] = action;
+        }
+        int[] sideHistory = history[isMax ? 1 : 0];
+        sideHistory[action] = (int) Math.min(Integer.MAX_VALUE - KILLERS - 1, (long) sideHistory[action] + depth * depth);
+    }
+
+    // Grows the per-ply killer, move-order and principal variation buffers to
+    // cover the given depth
+    private void ensurePlies(int depth) {
+        if (killers.length > depth) {
+            return;
+        }
+        int plies = Math.max(depth + 1, killers.length * 2);
+        int[][] grownKillers = new int[plies][], grownOrder = new int[plies][];
+        for (int ply = 0; ply < plies; ply++) {
+            grownKillers[ply] = ply < killers.length ? killers[ply] : new int[KILLERS];
+            grownOrder[ply] = ply < moveOrder.length ? moveOrder[ply] : new int[maxRemoval];
+        }
+        killers = grownKillers;
+        moveOrder = grownOrder;
+        pv = Arrays.copyOf(pv, plies);
+    }
+
+}
@@ -0,0 +1,32 @@
+package nim;
+
+/**
+ * Reports how the parallel NimPlayer search scales: runs the same time-boxed
+ * search on 1 to N threads, each with a fresh player, and prints the nodes
+ * expanded per second and the speedup over a single thread.
+ */
+public class NimSearchBenchmark {
+
+    public static final int MAX_REMOVAL = 3, INIT_STATE = 100_000;
+    public static final long BUDGET_MILLIS = 500;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        // Warm up the JIT so the single-threaded baseline is not penalized
+        new NimPlayer(MAX_REMOVAL, BUDGET_MILLIS).search(INIT_STATE);
+
+        System.out.println("threads        nodes      nodes/s  speedup");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            NimPlayer nimesis = new NimPlayer(MAX_REMOVAL, BUDGET_MILLIS, threads);
+            nimesis.search(INIT_STATE);
+            double nps = nimesis.lastNodesPerSecond();
+            if (threads == 1) {
+                baseline = nps;
+            }
+            System.out.printf("%7d %12d %12.0f %8.2f%n", threads, nimesis.lastNodes(), nps, nps / baseline);
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+package nim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process Nim game server hosting many simultaneous sessions against the
+ * agent. Requests are answered asynchronously on a worker pool: submitting a
+ * move returns at once with a future for the server's response. Sessions are
+ * independent and locked individually, while all of them share one move
+ * oracle and, for positions it cannot answer, one searching NimPlayer whose
+ * transposition table serves every session.
+ */
+public class NimServer implements AutoCloseable {
+
+    public static final int MAX_REMOVAL = 3, INIT_STATE = 7;
+
+    /** Outcome of a move request */
+    public enum Status {
+        IN_PROGRESS, PLAYER_WON, AGENT_WON, ILLEGAL_MOVE, NO_SUCH_SESSION
+    }
+
+    private final int maxRemoval, initState;
+    private final NimOracle oracle;
+    private final NimPlayer fallback;
+    private final ConcurrentHashMap<Long, Session> sessions;
+    private final AtomicLong nextId;
+    private final ExecutorService workers;
+
+    /**
+     * Constructs a new NimServer, in which the player moves first in every game.
+     *
+     * @param maxRemoval The most stones that may be removed per turn
+     * @param initState  The # of stones in the pile at the start of each game
+     * @param threads    Number of worker threads answering requests
+     */
+    NimServer(int maxRemoval, int initState, int threads) {
+        this.maxRemoval = maxRemoval;
+        this.initState = initState;
+        this.oracle = NimOracle.subtraction(maxRemoval);
+        this.fallback = new NimPlayer(maxRemoval);
+        this.sessions = new ConcurrentHashMap<>();
+        this.nextId = new AtomicLong();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "nim-server-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a new game.
+     *
+     * @return The id of the new session
+     */
+    public long open() {
+        long id = nextId.incrementAndGet();
+        sessions.put(id, new Session(initState));
+        return id;
+    }
+
+    /**
+     * Submits the player's move in a session; the agent's reply is computed on
+     * a worker thread.
+     *
+     * @param session Id returned by open
+     * @param taken   # of stones the player takes
+     * @return A future for the server's response, failed with a
+     *         CancellationException if the server is closed before answering
+     */
+    public CompletableFuture<Response> move(long session, int taken) {
+        Request request = new Request(session, taken);
+        try {
+            workers.execute(request);
+        } catch (RejectedExecutionException e) {
+            request.future.cancel(false);
+        }
+        return request.future;
+    }
+
+    /**
+     * @return The number of games still in progress
+     */
+    public int sessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops the worker threads. Requests still queued, and any made after,
+     * fail with a CancellationException; requests already being answered
+     * finish.
+     */
+    @Override
+    public void close() {
+        for (Runnable queued : workers.shutdownNow()) {
+            ((Request) queued).future.cancel(false);
+        }
+    }
+
+    /**
+     * Plays many concurrent random games against the server and prints the
+     * sustained move throughput: [sessions] [threads]
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        try (NimServer server = new NimServer(MAX_REMOVAL, INIT_STATE, threads)) {
+            long start = System.nanoTime();
+            List<CompletableFuture<Integer>> played = new ArrayList<>();
+            for (int g = 0; g < games; g++) {
+                played.add(playRandomly(server, server.open(), INIT_STATE, 0));
+            }
+            long moves = 0;
+            for (CompletableFuture<Integer> game : played) {
+                moves += game.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games, %d moves on %d threads in %.2fs (%.0f moves/s)%n", games, moves, threads,
+                    seconds, moves / seconds);
+        }
+    }
+
+    /** Helper Methods */
+
+    private Response play(long id, int taken) {
+        Session session = sessions.get(id);
+        if (session == null) {
+            return new Response(Status.NO_SUCH_SESSION, 0, 0);
+        }
+        synchronized (session) {
+            if (session.remaining == 0) {
+                return new Response(Status.NO_SUCH_SESSION, 0, 0);
+            }
+            if (taken < 1 || taken > Math.min(session.remaining, maxRemoval)) {
+                return new Response(Status.ILLEGAL_MOVE, 0, session.remaining);
+            }
+            session.remaining -= taken;
+            if (session.remaining == 0) {
+                sessions.remove(id);
+                return new Response(Status.PLAYER_WON, 0, 0);
+            }
+            int reply = agentMove(session.remaining);
+            session.remaining -= reply;
+            if (session.remaining == 0) {
+                sessions.remove(id);
+                return new Response(Status.AGENT_WON, reply, 0);
+            }
+            return new Response(Status.IN_PROGRESS, reply, session.remaining);
+        }
+    }
+
+    private int agentMove(int remaining) {
+        int choice = oracle.choose(remaining);
+        if (choice != NimOracle.UNSOLVED) {
+            return choice;
+        }
+        synchronized (fallback) {
+            return fallback.search(remaining);
+        }
+    }
+
+    // Chains random legal moves in a session until its game ends, counting the
+    // moves made by both sides
+    private static CompletableFuture<Integer> playRandomly(NimServer server, long session, int remaining,
+            int moves) {
+        int taken = 1 + ThreadLocalRandom.current().nextInt(Math.min(remaining, server.maxRemoval));
+        return server.move(session, taken).thenCompose(response -> response.status == Status.IN_PROGRESS
+                ? playRandomly(server, session, response.remaining, moves + 2)
+                : CompletableFuture.completedFuture(moves + (response.status == Status.AGENT_WON ? 2 : 1)));
+    }
+
+    /**
+     * A move request waiting for a worker, holding the future its answer
+     * completes.
+     */
+    private class Request implements Runnable {
+        final long session;
+        final int taken;
+        final CompletableFuture<Response> future;
+
+        Request(long session, int taken) {
+            this.session = session;
+            this.taken = taken;
+            this.future = new CompletableFuture<>();
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(play(session, taken));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * A single game in progress: just the stones left in its pile, guarded by
+     * the session's own lock.
+     */
+    private static class Session {
+        int remaining;
+
+        Session(int remaining) {
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * The server's answer to a move request.
+     */
+    public static class Response {
+
+        public final Status status;
+        public final int reply, remaining;
+
+        /**
+         * @param status    Outcome of the request
+         * @param reply     # of stones the agent took in reply, 0 if it did not move
+         * @param remaining # of stones left after both moves
+         */
+        Response(Status status, int reply, int remaining) {
+            this.status = status;
+            this.reply = reply;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (reply: %d, remaining: %d)", status, reply, remaining);
+        }
+
+    }
+
+}
@@ -0,0 +1,186 @@
+package nim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Headless self-play harness: plays many games of Nim between two strategies
+ * across a pool of threads, alternating who moves first, and reports each
+ * player's win rate, average move latency and search nodes per move. Each
+ * thread builds its own pair of strategies, so stateful players such as
+ * NimPlayer are never shared between threads.
+ */
+public class NimSimulation {
+
+    public static final int MAX_REMOVAL = 3, INIT_STATE = 7;
+
+    private final int maxRemoval, initState;
+    private final List<Supplier<NimStrategy>> players;
+
+    /**
+     * Constructs a new NimSimulation between two strategies.
+     *
+     * @param maxRemoval The most stones that may be removed per turn
+     * @param initState  The # of stones in the pile at the start of each game
+     * @param player0    Builds player 0's strategy, once per thread
+     * @param player1    Builds player 1's strategy, once per thread
+     */
+    NimSimulation(int maxRemoval, int initState, Supplier<NimStrategy> player0, Supplier<NimStrategy> player1) {
+        this.maxRemoval = maxRemoval;
+        this.initState = initState;
+        this.players = new ArrayList<>();
+        players.add(player0);
+        players.add(player1);
+    }
+
+    /**
+     * Plays the given number of games, split evenly over the given number of
+     * threads; player 0 moves first in the even-numbered games.
+     *
+     * @param games   Number of games to play
+     * @param threads Number of threads to play them on
+     * @return The combined statistics of every game
+     */
+    public Report run(long games, int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Report>> batches = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long from = games * t / threads, to = games * (t + 1) / threads;
+                batches.add(pool.submit(() -> play(from, to)));
+            }
+            Report total = new Report();
+            for (Future<Report> batch : batches) {
+                total.merge(batch.get());
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Simulation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a simulation from the command line and prints its report:
+     * [games] [threads] [opponent: random | greedy | player]
+     */
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String opponent = args.length > 2 ? args[2] : "random";
+
+        Supplier<NimStrategy> rival;
+        switch (opponent) {
+        case "greedy":
+            rival = () -> NimStrategy.greedy(MAX_REMOVAL);
+            break;
+        case "player":
+            rival = () -> new NimPlayer(MAX_REMOVAL);
+            break;
+        default:
+            rival = () -> NimStrategy.random(MAX_REMOVAL);
+        }
+
+        NimSimulation simulation = new NimSimulation(MAX_REMOVAL, INIT_STATE, () -> new NimPlayer(MAX_REMOVAL), rival);
+        long start = System.nanoTime();
+        Report report = simulation.run(games, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games on %d threads in %.2fs (%.0f games/s)%n", report.games, threads, seconds,
+                report.games / seconds);
+        System.out.println("  [Nimesis]  " + report.describe(0));
+        System.out.println("  [" + opponent + "] " + report.describe(1));
+    }
+
+    /** Helper Methods */
+
+    private Report play(long from, long to) {
+        NimStrategy[] strategies = { players.get(0).get(), players.get(1).get() };
+        Report report = new Report();
+        for (long game = from; game < to; game++) {
+            int remaining = initState, turn = (int) (game % 2);
+            while (remaining > 0) {
+                long start = System.nanoTime();
+                int taken = strategies[turn].choose(remaining);
+                report.moveNanos[turn] += System.nanoTime() - start;
+                report.nodes[turn] += strategies[turn].lastNodes();
+                report.moves[turn]++;
+                if (taken < 1 || taken > Math.min(remaining, maxRemoval)) {
+                    throw new IllegalStateException("Player " + turn + " took " + taken + " of " + remaining);
+                }
+                remaining -= taken;
+                turn = 1 - turn;
+            }
+            // Whoever took the last stone wins; the turn has already passed on
+            report.wins[1 - turn]++;
+            report.games++;
+        }
+        return report;
+    }
+
+    /**
+     * Statistics gathered over a batch of simulated games, indexed by player.
+     */
+    public static class Report {
+
+        long games;
+        final long[] wins = new long[2], moves = new long[2], moveNanos = new long[2], nodes = new long[2];
+
+        /**
+         * @param player 0 or 1
+         * @return The fraction of games the player won
+         */
+        public double winRate(int player) {
+            return games == 0 ? 0 : (double) wins[player] / games;
+        }
+
+        /**
+         * @param player 0 or 1
+         * @return The player's average time to choose a move, in nanoseconds
+         */
+        public double avgMoveNanos(int player) {
+            return moves[player] == 0 ? 0 : (double) moveNanos[player] / moves[player];
+        }
+
+        /**
+         * @param player 0 or 1
+         * @return The average number of search nodes the player expanded per move
+         */
+        public double avgNodesPerMove(int player) {
+            return moves[player] == 0 ? 0 : (double) nodes[player] / moves[player];
+        }
+
+        /**
+         * @return The number of games played
+         */
+        public long games() {
+            return games;
+        }
+
+        void merge(Report other) {
+            games += other.games;
+            for (int p = 0; p < 2; p++) {
+                wins[p] += other.wins[p];
+                moves[p] += other.moves[p];
+                moveNanos[p] += other.moveNanos[p];
+                nodes[p] += other.nodes[p];
+            }
+        }
+
+        String describe(int player) {
+            return String.format("win rate: %.4f, avg move: %.0fns, nodes/move: %.1f", winRate(player),
+                    avgMoveNanos(player), avgNodesPerMove(player));
+        }
+
+    }
+
+}
@@ -0,0 +1,42 @@
+package nim;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A policy for playing single-pile Nim: given the stones remaining, choose how
+ * many to take. NimPlayer is one; the simple baselines below are the opponents
+ * it is benchmarked against.
+ */
+public interface NimStrategy {
+
+    /**
+     * @param remaining Integer representing the amount of stones left in the pile
+     * @return An int action representing the number of stones to remove
+     */
+    int choose(int remaining);
+
+    /**
+     * @return The number of search nodes expanded by the last call to choose, 0
+     *         for strategies that do not search
+     */
+    default long lastNodes() {
+        return 0;
+    }
+
+    /**
+     * @param maxRemoval The most stones that may be removed per turn
+     * @return A strategy that takes a uniformly random legal number of stones
+     */
+    static NimStrategy random(int maxRemoval) {
+        return remaining -> 1 + ThreadLocalRandom.current().nextInt(Math.min(remaining, maxRemoval));
+    }
+
+    /**
+     * @param maxRemoval The most stones that may be removed per turn
+     * @return A strategy that always takes as many stones as it may
+     */
+    static NimStrategy greedy(int maxRemoval) {
+        return remaining -> Math.min(remaining, maxRemoval);
+    }
+
+}
@@ -0,0 +1,142 @@
+package nim;
+
+import java.util.Arrays;
+
+/**
+ * Counters and histograms describing how hard the Nim search worked: nodes
+ * expanded, cutoffs by the index of the move that caused them, transposition
+ * table hits and misses, deepest ply reached and time spent per move. A high
+ * share of cutoffs at move index 0 means move ordering is doing its job.
+ */
+public class SearchStats {
+
+    private static final int TIME_BUCKETS = 64;
+
+    long nodes, tableHits, tableMisses, moves, nanos;
+    int maxPly;
+    final long[] cutoffsByIndex;
+    final long[] moveTimes;
+
+    /**
+     * Constructs an empty SearchStats.
+     *
+     * @param maxRemoval The most stones that may be removed per turn, i.e. the
+     *                   most moves a node can have
+     */
+    SearchStats(int maxRemoval) {
+        this.cutoffsByIndex = new long[maxRemoval];
+        this.moveTimes = new long[TIME_BUCKETS];
+    }
+
+    /**
+     * @return The number of nodes expanded
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return The number of probes answered by the transposition table
+     */
+    public long tableHits() {
+        return tableHits;
+    }
+
+    /**
+     * @return The number of probes for states the table did not hold
+     */
+    public long tableMisses() {
+        return tableMisses;
+    }
+
+    /**
+     * @return The fraction of probes answered by the table, 0 if none were made
+     */
+    public double tableHitRate() {
+        long probes = tableHits + tableMisses;
+        return probes == 0 ? 0 : (double) tableHits / probes;
+    }
+
+    /**
+     * @return The deepest ply below the root that was reached
+     */
+    public int maxPly() {
+        return maxPly;
+    }
+
+    /**
+     * @param index Position of a move in its node's ordered move list
+     * @return The number of cutoffs caused by the move at that position
+     */
+    public long cutoffs(int index) {
+        return cutoffsByIndex[index];
+    }
+
+    /**
+     * @return The total number of cutoffs
+     */
+    public long cutoffs() {
+        return Arrays.stream(cutoffsByIndex).sum();
+    }
+
+    /**
+     * @return The number of moves searched
+     */
+    public long moves() {
+        return moves;
+    }
+
+    /**
+     * @return The average time spent searching a move, in nanoseconds
+     */
+    public double avgMoveNanos() {
+        return moves == 0 ? 0 : (double) nanos / moves;
+    }
+
+    /**
+     * @param bucket Histogram bucket b, covering moves that took [2^b, 2^(b+1))
+     *               nanoseconds
+     * @return The number of moves whose search time fell in that bucket
+     */
+    public long moveTimes(int bucket) {
+        return moveTimes[bucket];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("nodes: %d, cutoffs by move index: %s, table hit rate: %.3f (%d/%d), max ply: %d, "
+                + "moves: %d, avg move: %.0fns", nodes, Arrays.toString(cutoffsByIndex), tableHitRate(), tableHits,
+                tableHits + tableMisses, maxPly, moves, avgMoveNanos());
+    }
+
+    /** Helper Methods */
+
+    void recordMove(long elapsed) {
+        moves++;
+        nanos += elapsed;
+        moveTimes[63 - Long.numberOfLeadingZeros(Math.max(elapsed, 1))]++;
+    }
+
+    void merge(SearchStats other) {
+        nodes += other.nodes;
+        tableHits += other.tableHits;
+        tableMisses += other.tableMisses;
+        moves += other.moves;
+        nanos += other.nanos;
+        maxPly = Math.max(maxPly, other.maxPly);
+        for (int i = 0; i < cutoffsByIndex.length; i++) {
+            cutoffsByIndex[i] += other.cutoffsByIndex[i];
+        }
+        for (int i = 0; i < TIME_BUCKETS; i++) {
+            moveTimes[i] += other.moveTimes[i];
+        }
+    }
+
+    void reset() {
+        nodes = tableHits = tableMisses = moves = nanos = 0;
+        maxPly = 0;
+        Arrays.fill(cutoffsByIndex, 0);
+        Arrays.fill(moveTimes, 0);
+    }
+
+}
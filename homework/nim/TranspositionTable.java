@@ -0,0 +1,231 @@
+package nim;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Transposition table for the Nim game tree: maps a game state, keyed by the
+ * number of stones remaining and the side to move, to the minimax score found
+ * for it and the depth it was searched to. Keys and entries are stored in
+ * parallel primitive arrays with open addressing so that a lookup costs a few
+ * array reads and no allocation.
+ *
+ * Several search threads may share one table without locking: a slot's key is
+ * claimed with a compare-and-set, and each entry is packed into a single long
+ * so a reader never sees half of a write. Growing the table is not thread-safe,
+ * so a table shared by concurrent searches must first be reserved for every
+ * state they can store.
+ */
+class TranspositionTable {
+
+    /**
+     * Bound flags for a stored score: EXACT scores are the true minimax value,
+     * LOWER scores failed high (true value >= score) and UPPER scores failed low
+     * (true value <= score)
+     */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** Entry returned by probe when the state has not been stored */
+    static final long MISS = 0L;
+
+    /** Depth recorded for scores that hold no matter how deep we search */
+    static final int MAX_DEPTH = (1 << 24) - 1;
+
+    private static final int INIT_CAPACITY = 1 << 10, MAX_CAPACITY = 1 << 30;
+    private static final long EMPTY = 0L;
+
+    private final AtomicInteger size;
+    private AtomicLongArray keys, entries;
+    private int mask;
+    // Set while concurrent searches share the table, when it must not grow
+    private volatile boolean shared;
+
+    /**
+     * Constructs an empty TranspositionTable with a default initial capacity
+     * that grows as states are stored.
+     */
+    TranspositionTable() {
+        this(INIT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty TranspositionTable sized to hold at least the given
+     * number of states before it has to grow.
+     *
+     * @param capacity Number of states expected to be stored
+     */
+    TranspositionTable(int capacity) {
+        this.size = new AtomicInteger();
+        allocate((int) Math.min(slotsFor(capacity), MAX_CAPACITY));
+    }
+
+    /**
+     * Looks up the entry stored for the given state.
+     *
+     * @param remaining The # of stones remaining in the pile
+     * @param isMax     Whether the agent (max) is the side to move
+     * @return The packed entry for the state, or MISS if it is not stored; read
+     *         it with score, flag, depth and move
+     */
+    long probe(int remaining, boolean isMax) {
+        long key = key(remaining, isMax);
+        for (int slot = slot(key);; slot = (slot + 1) & mask) {
+            long stored = keys.get(slot);
+            if (stored == key) {
+                return entries.get(slot);
+            }
+            if (stored == EMPTY) {
+                return MISS;
+            }
+        }
+    }
+
+    /**
+     * Stores the search result for the given state, unless the state already
+     * holds the result of a deeper search.
+     *
+     * @param remaining The # of stones remaining in the pile
+     * @param isMax     Whether the agent (max) is the side to move
+     * @param score     Minimax score found for the state, in [-128, 127]
+     * @param flag      One of EXACT, LOWER or UPPER
+     * @param depth     # of plies the state was searched to, up to MAX_DEPTH
+     * @param move      Best action found from the state, 0 if none
+     */
+    void store(int remaining, boolean isMax, int score, int flag, int depth, int move) {
+        if ((size.get() + 1) * 2 > keys.length()) {
+            grow();
+        }
+        long key = key(remaining, isMax);
+        int slot = slot(key);
+        while (true) {
+            long stored = keys.get(slot);
+            if (stored == key) {
+                break;
+            }
+            if (stored == EMPTY && keys.compareAndSet(slot, EMPTY, key)) {
+                size.incrementAndGet();
+                break;
+            }
+            // Either another state owns this slot, or another thread just
+            // claimed it; re-read it before moving on
+            if (keys.get(slot) != key) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        if (depth(entries.get(slot)) <= depth) {
+            entries.set(slot, pack(score, flag, depth, move));
+        }
+    }
+
+    /**
+     * Grows the table, if needed, so that the given number of states can be
+     * stored without growing again; call before sharing it between threads.
+     *
+     * @param states Number of states the table must be able to hold
+     * @return false, leaving the table as it is, if that many states would
+     *         need more slots than an array can hold
+     */
+    boolean reserve(long states) {
+        long slots = slotsFor(states);
+        if (slots > MAX_CAPACITY) {
+            return false;
+        }
+        if (slots > keys.length()) {
+            rehash((int) slots);
+        }
+        return true;
+    }
+
+    /**
+     * @param shared Whether concurrent searches are about to share the table,
+     *               or have all finished with it; a shared table refuses to
+     *               grow, so it must be reserved first
+     */
+    void shared(boolean shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * @return The number of states currently stored
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Forgets every stored state, keeping the current capacity.
+     */
+    void clear() {
+        allocate(keys.length());
+    }
+
+    static int score(long entry) {
+        return (byte) entry;
+    }
+
+    static int flag(long entry) {
+        return (int) (entry >>> 8) & 0x3;
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> 10) & MAX_DEPTH;
+    }
+
+    static int move(long entry) {
+        return (int) (entry >>> 34);
+    }
+
+    /** Helper Methods */
+
+    private static long pack(int score, int flag, int depth, int move) {
+        return (score & 0xFFL) | ((long) flag << 8) | ((long) depth << 10) | ((long) move << 34);
+    }
+
+    // Offset by one so that the all-zero key marks an empty slot
+    private static long key(int remaining, boolean isMax) {
+        return (((long) remaining << 1) | (isMax ? 1 : 0)) + 1;
+    }
+
+    // Power of two number of slots keeping the given number of states at most
+    // half full
+    private static long slotsFor(long states) {
+        return Long.highestOneBit(Math.max(states, 2) * 2 - 1) * 2;
+    }
+
+    private int slot(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new AtomicLongArray(capacity);
+        entries = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+        size.set(0);
+    }
+
+    private void grow() {
+        if (shared) {
+            throw new IllegalStateException("Table shared between searches outgrew its reservation");
+        }
+        rehash(keys.length() * 2);
+    }
+
+    private void rehash(int capacity) {
+        AtomicLongArray oldKeys = keys, oldEntries = entries;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length(); i++) {
+            long key = oldKeys.get(i);
+            if (key != EMPTY) {
+                int slot = slot(key);
+                while (keys.get(slot) != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys.set(slot, key);
+                entries.set(slot, oldEntries.get(i));
+                size.incrementAndGet();
+            }
+        }
+    }
+
+}